@@ -0,0 +1,146 @@
+package com.example.yogaadmin.db;
+
+import android.content.Context;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.example.yogaadmin.models.Schedule;
+import com.example.yogaadmin.models.YogaCourse;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Hammers tryEnroll/releaseSeats from many threads against a throwaway database file.
+ */
+@RunWith(AndroidJUnit4.class)
+public class EnrollmentConcurrencyTest {
+    private static final String TEST_DATABASE = "enrollment-test.db";
+    private static final int THREADS = 16;
+    private static final int CAPACITY = 100;
+
+    private Context context;
+    private DatabaseHelper dbHelper;
+    private int scheduleId;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        context.deleteDatabase(TEST_DATABASE);
+        dbHelper = new DatabaseHelper(context, TEST_DATABASE);
+
+        YogaCourse course = new YogaCourse("Monday", "10:00", 10f, CAPACITY, 60, "Flow Yoga",
+                null, null, null);
+        int courseId = (int) dbHelper.addYogaCourse(course);
+        scheduleId = (int) dbHelper.addSchedule(new Schedule("06/10/2025", "Sam", null, courseId));
+    }
+
+    @After
+    public void tearDown() {
+        dbHelper.close();
+        context.deleteDatabase(TEST_DATABASE);
+    }
+
+    @Test
+    public void concurrentEnrollmentsNeverOverbook() throws Exception {
+        AtomicInteger accepted = new AtomicInteger();
+        AtomicInteger refused = new AtomicInteger();
+        Set<Integer> counts = ConcurrentHashMap.newKeySet();
+
+        runConcurrently(50, () -> {
+            int enrollment = dbHelper.tryEnroll(scheduleId, 1);
+            if (enrollment == -1) {
+                refused.incrementAndGet();
+            } else {
+                accepted.incrementAndGet();
+                // Every successful booking saw a distinct count within capacity
+                assertTrue(counts.add(enrollment));
+                assertTrue(enrollment <= CAPACITY);
+            }
+        });
+
+        assertEquals(CAPACITY, accepted.get());
+        assertEquals(THREADS * 50 - CAPACITY, refused.get());
+        assertEquals(CAPACITY, dbHelper.getSchedule(scheduleId).getCurrentEnrollment());
+    }
+
+    @Test
+    public void interleavedEnrollAndReleaseLoseNoUpdates() throws Exception {
+        runConcurrently(200, () -> {
+            int enrollment = dbHelper.tryEnroll(scheduleId, 2);
+            if (enrollment != -1) {
+                assertTrue(enrollment <= CAPACITY);
+                assertTrue(dbHelper.releaseSeats(scheduleId, 2) >= 0);
+            }
+        });
+
+        assertEquals(0, dbHelper.getSchedule(scheduleId).getCurrentEnrollment());
+    }
+
+    @Test
+    public void refusesWhatCannotBeHonoured() {
+        assertEquals(-1, dbHelper.tryEnroll(scheduleId, CAPACITY + 1));
+        assertEquals(-1, dbHelper.releaseSeats(scheduleId, 1));
+        assertEquals(CAPACITY, dbHelper.tryEnroll(scheduleId, CAPACITY));
+        assertEquals(-1, dbHelper.tryEnroll(scheduleId, 1));
+        assertEquals(-1, dbHelper.tryEnroll(scheduleId + 1000, 1));
+
+        Schedule schedule = dbHelper.getSchedule(scheduleId);
+        schedule.setCancelled(true);
+        dbHelper.updateSchedule(schedule);
+        assertEquals(CAPACITY - 1, dbHelper.releaseSeats(scheduleId, 1));
+        assertEquals(-1, dbHelper.tryEnroll(scheduleId, 1));
+    }
+
+    @Test
+    public void scheduleEditsDoNotOverwriteBookings() {
+        Schedule stale = dbHelper.getSchedule(scheduleId);
+        dbHelper.tryEnroll(scheduleId, 5);
+
+        stale.setTeacher("Samantha");
+        dbHelper.updateSchedule(stale);
+
+        assertEquals(5, dbHelper.getSchedule(scheduleId).getCurrentEnrollment());
+    }
+
+    // Starts every thread at once, then runs the action `iterations` times on each
+    private void runConcurrently(int iterations, Runnable action) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        try {
+            for (int t = 0; t < THREADS; t++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < iterations; i++) {
+                        action.run();
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                // Rethrows assertion failures from the worker threads
+                future.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.example.yogaadmin.db;
+
+import android.content.Context;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.example.yogaadmin.models.Schedule;
+import com.example.yogaadmin.models.YogaCourse;
+import com.example.yogaadmin.utils.DateUtils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.*;
+
+/**
+ * Merges pulled rows into a throwaway database file and checks what the report counts.
+ */
+@RunWith(AndroidJUnit4.class)
+public class MergePulledTest {
+    private static final String TEST_DATABASE = "merge-test.db";
+    private static final String DATE = "06/10/2025";
+
+    private Context context;
+    private DatabaseHelper dbHelper;
+    private int courseId;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        context.deleteDatabase(TEST_DATABASE);
+        dbHelper = new DatabaseHelper(context, TEST_DATABASE);
+        courseId = (int) dbHelper.addYogaCourse(new YogaCourse("Monday", "10:00", 10f, 20, 60, "Flow Yoga",
+                null, null, null));
+    }
+
+    @After
+    public void tearDown() {
+        dbHelper.close();
+        context.deleteDatabase(TEST_DATABASE);
+    }
+
+    @Test
+    public void pulledScheduleIsCountedOnceWritten() {
+        PulledChanges changes = new PulledChanges();
+        changes.addSchedule(pulledSchedule(100, courseId), false);
+
+        MergeReport report = dbHelper.mergePulled(changes);
+
+        assertEquals(1, report.getInserted());
+        assertEquals(0, report.getSkipped());
+        assertNotNull(dbHelper.getSchedule(100));
+    }
+
+    @Test
+    public void scheduleOfLocallyDeletedCourseIsSkipped() {
+        dbHelper.deleteYogaCourse(courseId);
+        PulledChanges changes = new PulledChanges();
+        changes.addSchedule(pulledSchedule(100, courseId), false);
+
+        MergeReport report = dbHelper.mergePulled(changes);
+
+        assertEquals(0, report.getInserted());
+        assertEquals(0, report.getUpdated());
+        assertEquals(1, report.getSkipped());
+        assertNull(dbHelper.getSchedule(100));
+    }
+
+    private static Schedule pulledSchedule(int id, int yogaCourseId) {
+        return new Schedule(id, DateUtils.parseEpochDay(DATE), DATE, "Sam", null, yogaCourseId, 0, false,
+                System.currentTimeMillis(), true);
+    }
+}
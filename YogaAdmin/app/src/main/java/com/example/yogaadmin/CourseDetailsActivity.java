@@ -16,19 +16,25 @@ import androidx.appcompat.widget.Toolbar;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
+import com.example.yogaadmin.adapters.EndlessScrollListener;
 import com.example.yogaadmin.adapters.ScheduleAdapter;
-import com.example.yogaadmin.db.DatabaseHelper;
+import com.example.yogaadmin.db.ChangeNotifier;
+import com.example.yogaadmin.db.YogaRepository;
 import com.example.yogaadmin.models.Schedule;
 import com.example.yogaadmin.models.YogaCourse;
 import com.google.android.material.floatingactionbutton.FloatingActionButton;
 
+import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.Future;
 
 public class CourseDetailsActivity extends AppCompatActivity {
     public static final String EXTRA_COURSE_ID = "course_id";
+    private static final int PAGE_SIZE = 50;
 
-    private DatabaseHelper dbHelper;
+    private YogaRepository repository;
     private YogaCourse course;
     private ScheduleAdapter scheduleAdapter;
 
@@ -41,13 +47,38 @@ public class CourseDetailsActivity extends AppCompatActivity {
     private TextView courseEquipmentText;
     private TextView courseDescriptionText;
     private RecyclerView scheduleRecyclerView;
+    private Schedule lastSchedule;
+    private boolean hasMoreSchedules;
+    private Future<?> courseTask;
+    private Future<List<Schedule>> pageTask;
+    // Writes seen since the screen was last brought up to date
+    private final Set<Integer> pendingScheduleIds = new HashSet<>();
+    private boolean pendingScheduleReload;
+    private boolean pendingCourseReload;
+    private boolean resumed;
+
+    private final ChangeNotifier.Observer courseObserver = (table, ids) -> {
+        if (course != null && (ids == null || ids.contains(course.getId()))) {
+            pendingCourseReload = true;
+            onChangesPending();
+        }
+    };
+
+    private final ChangeNotifier.Observer scheduleObserver = (table, ids) -> {
+        if (ids == null) {
+            pendingScheduleReload = true;
+        } else {
+            pendingScheduleIds.addAll(ids);
+        }
+        onChangesPending();
+    };
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_course_details);
 
-        dbHelper = new DatabaseHelper(this);
+        repository = YogaAdminApp.getRepository(this);
         setupViews();
         setupScheduleRecyclerView();
 
@@ -58,6 +89,8 @@ public class CourseDetailsActivity extends AppCompatActivity {
             return;
         }
 
+        repository.getChangeNotifier().register(ChangeNotifier.COURSES, courseObserver);
+        repository.getChangeNotifier().register(ChangeNotifier.SCHEDULES, scheduleObserver);
         loadCourse(courseId);
     }
 
@@ -88,15 +121,18 @@ public class CourseDetailsActivity extends AppCompatActivity {
     }
 
     private void loadCourse(int courseId) {
-        course = dbHelper.getYogaCourse(courseId);
-        if (course == null) {
-            Toast.makeText(this, "Course not found", Toast.LENGTH_SHORT).show();
-            finish();
-            return;
-        }
+        courseTask = repository.getYogaCourse(courseId, loaded -> {
+            courseTask = null;
+            course = loaded;
+            if (course == null) {
+                Toast.makeText(this, "Course not found", Toast.LENGTH_SHORT).show();
+                finish();
+                return;
+            }
 
-        updateCourseDetails();
-        loadSchedules();
+            updateCourseDetails();
+            loadSchedules();
+        });
     }
 
     private void updateCourseDetails() {
@@ -137,7 +173,8 @@ public class CourseDetailsActivity extends AppCompatActivity {
 
     private void setupScheduleRecyclerView() {
         if (scheduleRecyclerView != null) {
-            scheduleRecyclerView.setLayoutManager(new LinearLayoutManager(this));
+            LinearLayoutManager layoutManager = new LinearLayoutManager(this);
+            scheduleRecyclerView.setLayoutManager(layoutManager);
             scheduleAdapter = new ScheduleAdapter(new ScheduleAdapter.OnScheduleClickListener() {
                 @Override
                 public void onScheduleClick(Schedule schedule) {
@@ -162,9 +199,8 @@ public class CourseDetailsActivity extends AppCompatActivity {
                         .setTitle("Delete Schedule")
                         .setMessage("Are you sure you want to delete this scheduled class?")
                         .setPositiveButton("Delete", (dialog, which) -> {
-                            dbHelper.deleteSchedule(schedule.getId());
-                            loadSchedules();
-                            Toast.makeText(CourseDetailsActivity.this, R.string.course_deleted, Toast.LENGTH_SHORT).show();
+                            repository.deleteSchedule(schedule.getId(), ignored ->
+                                    Toast.makeText(CourseDetailsActivity.this, R.string.course_deleted, Toast.LENGTH_SHORT).show());
                         })
                         .setNegativeButton("Cancel", null)
                         .show();
@@ -172,22 +208,103 @@ public class CourseDetailsActivity extends AppCompatActivity {
 
                 @Override
                 public void onToggleCancelled(Schedule schedule) {
-                    schedule.setCancelled(!schedule.isCancelled());
-                    dbHelper.updateSchedule(schedule);
-                    loadSchedules();
+                    // Edit a copy: the adapter's instance must keep its old state for the diff
+                    Schedule toggled = new Schedule(schedule);
+                    toggled.setCancelled(!schedule.isCancelled());
+                    repository.updateSchedule(toggled, null);
                 }
             });
             scheduleRecyclerView.setAdapter(scheduleAdapter);
+            scheduleRecyclerView.addOnScrollListener(new EndlessScrollListener(layoutManager) {
+                @Override
+                protected void onLoadMore() {
+                    loadNextSchedulePage();
+                }
+            });
         }
     }
 
     private void loadSchedules() {
         if (course != null && scheduleAdapter != null) {
-            List<Schedule> schedules = dbHelper.getSchedulesForCourse(course.getId());
-            scheduleAdapter.setSchedules(schedules);
+            // A reload supersedes any page still in flight
+            if (pageTask != null) {
+                pageTask.cancel(false);
+            }
+            pageTask = repository.getSchedulesForCoursePage(course.getId(), null, PAGE_SIZE,
+                    YogaRepository.Callback.of(page -> {
+                        scheduleAdapter.setSchedules(page);
+                        onSchedulePageLoaded(page);
+                    }, this::onSchedulePageFailed));
+        }
+    }
+
+    private void loadNextSchedulePage() {
+        if (course == null || !hasMoreSchedules || pageTask != null) {
+            return;
+        }
+        pageTask = repository.getSchedulesForCoursePage(course.getId(), lastSchedule, PAGE_SIZE,
+                YogaRepository.Callback.of(page -> {
+                    scheduleAdapter.appendSchedules(page);
+                    onSchedulePageLoaded(page);
+                }, this::onSchedulePageFailed));
+    }
+
+    private void onSchedulePageLoaded(List<Schedule> page) {
+        pageTask = null;
+        hasMoreSchedules = page.size() == PAGE_SIZE;
+        lastSchedule = page.isEmpty() ? null : page.get(page.size() - 1);
+    }
+
+    // Leaves the paging position alone so the next scroll retries the same page
+    private void onSchedulePageFailed(Throwable error) {
+        pageTask = null;
+    }
+
+    private void onChangesPending() {
+        if (resumed) {
+            applyPendingChanges();
         }
     }
 
+    private void applyPendingChanges() {
+        if (course == null) {
+            return;
+        }
+        if (pendingCourseReload) {
+            // Reloads the course and its first page of schedules
+            pendingCourseReload = false;
+            pendingScheduleReload = false;
+            pendingScheduleIds.clear();
+            loadCourse(course.getId());
+            return;
+        }
+        if (pendingScheduleReload || pendingScheduleIds.size() > PAGE_SIZE) {
+            pendingScheduleReload = false;
+            pendingScheduleIds.clear();
+            loadSchedules();
+            return;
+        }
+        if (pendingScheduleIds.isEmpty()) {
+            return;
+        }
+
+        Set<Integer> changedIds = new HashSet<>(pendingScheduleIds);
+        pendingScheduleIds.clear();
+        repository.getSchedulesByIds(changedIds, changed -> {
+            Schedule loadedThrough = hasMoreSchedules ? lastSchedule : null;
+            for (Schedule schedule : changed) {
+                if (schedule.getYogaCourseId() == course.getId()) {
+                    changedIds.remove(schedule.getId());
+                    scheduleAdapter.upsertSchedule(schedule, loadedThrough);
+                }
+            }
+            // Deleted, or belonging to another course
+            for (int id : changedIds) {
+                scheduleAdapter.removeSchedule(id);
+            }
+        });
+    }
+
     @Override
     public boolean onCreateOptionsMenu(Menu menu) {
         getMenuInflater().inflate(R.menu.menu_course_details, menu);
@@ -221,16 +338,38 @@ public class CourseDetailsActivity extends AppCompatActivity {
     }
 
     private void deleteCourse() {
-        dbHelper.deleteYogaCourse(course.getId());
-        Toast.makeText(this, R.string.course_deleted, Toast.LENGTH_SHORT).show();
-        finish();
+        // This screen is closing; don't react to its own delete
+        repository.getChangeNotifier().unregister(courseObserver);
+        repository.deleteYogaCourse(course.getId(), ignored -> {
+            Toast.makeText(this, R.string.course_deleted, Toast.LENGTH_SHORT).show();
+            finish();
+        });
     }
 
     @Override
     protected void onResume() {
         super.onResume();
-        if (course != null) {
-            loadSchedules();
+        resumed = true;
+        // Only what changed while this screen was in the background is refreshed
+        applyPendingChanges();
+    }
+
+    @Override
+    protected void onPause() {
+        super.onPause();
+        resumed = false;
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        repository.getChangeNotifier().unregister(courseObserver);
+        repository.getChangeNotifier().unregister(scheduleObserver);
+        if (courseTask != null) {
+            courseTask.cancel(false);
+        }
+        if (pageTask != null) {
+            pageTask.cancel(false);
         }
     }
 }
\ No newline at end of file
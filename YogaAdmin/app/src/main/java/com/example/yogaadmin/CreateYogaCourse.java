@@ -14,7 +14,7 @@ import android.widget.Toast;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.appcompat.widget.Toolbar;
 
-import com.example.yogaadmin.db.DatabaseHelper;
+import com.example.yogaadmin.db.YogaRepository;
 import com.example.yogaadmin.models.YogaCourse;
 import com.google.android.material.textfield.TextInputEditText;
 import com.google.android.material.textfield.TextInputLayout;
@@ -22,7 +22,8 @@ import com.google.android.material.textfield.TextInputLayout;
 import java.util.Locale;
 
 public class CreateYogaCourse extends AppCompatActivity {
-    private DatabaseHelper dbHelper;
+    private YogaRepository repository;
+    private Button addButton;
     private AutoCompleteTextView dayOfWeekInput;
     private AutoCompleteTextView timeInput;
     private TextInputEditText capacityInput;
@@ -45,7 +46,7 @@ public class CreateYogaCourse extends AppCompatActivity {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_create_yoga_course);
 
-        dbHelper = new DatabaseHelper(this);
+        repository = YogaAdminApp.getRepository(this);
         setupToolbar();
         setupInputFields();
         setupButtons();
@@ -102,7 +103,7 @@ public class CreateYogaCourse extends AppCompatActivity {
     }
 
     private void setupButtons() {
-        Button addButton = findViewById(R.id.addButton);
+        addButton = findViewById(R.id.addButton);
         Button clearButton = findViewById(R.id.clearButton);
 
         addButton.setOnClickListener(new View.OnClickListener() {
@@ -242,13 +243,21 @@ public class CreateYogaCourse extends AppCompatActivity {
         course.setEquipment(equipmentInput.getText().toString());
         course.setDescription(descriptionInput.getText().toString());
 
-        long result = dbHelper.addYogaCourse(course);
-        if (result != -1) {
-            Toast.makeText(this, R.string.course_added, Toast.LENGTH_SHORT).show();
-            finish();
-        } else {
-            Toast.makeText(this, R.string.error_adding_course, Toast.LENGTH_SHORT).show();
-        }
+        // Prevent a second tap from queueing a duplicate course
+        addButton.setEnabled(false);
+        repository.addYogaCourse(course, YogaRepository.Callback.of(result -> {
+            if (result != -1) {
+                Toast.makeText(this, R.string.course_added, Toast.LENGTH_SHORT).show();
+                finish();
+            } else {
+                onAddFailed(null);
+            }
+        }, this::onAddFailed));
+    }
+
+    private void onAddFailed(Throwable error) {
+        Toast.makeText(this, R.string.error_adding_course, Toast.LENGTH_SHORT).show();
+        addButton.setEnabled(true);
     }
 
     private void clearInputs() {
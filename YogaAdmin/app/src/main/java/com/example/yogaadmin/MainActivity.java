@@ -7,37 +7,106 @@ import android.os.Bundle;
 import android.view.Menu;
 import android.view.MenuItem;
 import android.view.View;
+import android.widget.Toast;
 
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.appcompat.widget.Toolbar;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
+import com.example.yogaadmin.adapters.EndlessScrollListener;
 import com.example.yogaadmin.adapters.YogaCourseAdapter;
-import com.example.yogaadmin.db.DatabaseHelper;
-import com.example.yogaadmin.models.YogaCourse;
+import com.example.yogaadmin.db.ChangeNotifier;
+import com.example.yogaadmin.db.MergeReport;
+import com.example.yogaadmin.db.YogaRepository;
+import com.example.yogaadmin.models.CourseSummary;
 import com.example.yogaadmin.utils.NetworkStateReceiver;
-import com.example.yogaadmin.sync.FirebaseSync;
+import com.example.yogaadmin.sync.SyncReport;
+import com.example.yogaadmin.sync.SyncScheduler;
 import com.google.android.material.floatingactionbutton.FloatingActionButton;
 
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Future;
 
 public class MainActivity extends AppCompatActivity {
-    private DatabaseHelper dbHelper;
+    private static final int PAGE_SIZE = 50;
+
+    private YogaRepository repository;
+    private SyncScheduler syncScheduler;
     private YogaCourseAdapter adapter;
     private RecyclerView recyclerView;
     private NetworkStateReceiver networkReceiver;
+    private int lastCourseId;
+    private boolean hasMoreCourses;
+    private Future<List<CourseSummary>> pageTask;
+    // Course ids written since the list was last brought up to date
+    private final Set<Integer> pendingCourseIds = new HashSet<>();
+    private boolean pendingFullReload;
+    // Schedule writes change the per-course figures, but not which course they belong to
+    private boolean pendingSummaryRefresh;
+    private boolean resumed;
+
+    private final ChangeNotifier.Observer courseObserver = (table, ids) -> {
+        if (ids == null) {
+            pendingFullReload = true;
+        } else {
+            pendingCourseIds.addAll(ids);
+        }
+        if (resumed) {
+            applyPendingChanges();
+        }
+    };
+
+    private final ChangeNotifier.Observer scheduleObserver = (table, ids) -> {
+        pendingSummaryRefresh = true;
+        if (resumed) {
+            applyPendingChanges();
+        }
+    };
+
+    // Background runs stay quiet; only a sync started from the menu reports back
+    private final SyncScheduler.Listener syncListener = new SyncScheduler.Listener() {
+        @Override
+        public void onSyncStarted(boolean userRequested) {
+            if (userRequested) {
+                Toast.makeText(MainActivity.this, R.string.sync_in_progress, Toast.LENGTH_SHORT).show();
+            }
+        }
+
+        @Override
+        public void onSyncFinished(SyncReport report, boolean userRequested) {
+            // Rows written by the sync reach the list through the change notifier
+            if (userRequested) {
+                showSyncReport(report);
+            }
+        }
+
+        @Override
+        public void onSyncFailed(String error, boolean userRequested, long retryInMillis) {
+            // The scheduler retries on its own
+            if (userRequested) {
+                Toast.makeText(MainActivity.this, R.string.sync_error, Toast.LENGTH_SHORT).show();
+            }
+        }
+    };
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_main);
 
-        dbHelper = new DatabaseHelper(this);
+        repository = YogaAdminApp.getRepository(this);
+        syncScheduler = YogaAdminApp.getSyncScheduler(this);
         setupToolbar();
         setupRecyclerView();
         setupFab();
         setupNetworkReceiver();
+        repository.getChangeNotifier().register(ChangeNotifier.COURSES, courseObserver);
+        repository.getChangeNotifier().register(ChangeNotifier.SCHEDULES, scheduleObserver);
+        syncScheduler.addListener(syncListener);
     }
 
     private void setupToolbar() {
@@ -47,10 +116,95 @@ public class MainActivity extends AppCompatActivity {
 
     private void setupRecyclerView() {
         recyclerView = findViewById(R.id.yogaClassesRecyclerView);
-        recyclerView.setLayoutManager(new LinearLayoutManager(this));
-        List<YogaCourse> courses = dbHelper.getAllYogaCourses();
-        adapter = new YogaCourseAdapter(courses);
+        LinearLayoutManager layoutManager = new LinearLayoutManager(this);
+        recyclerView.setLayoutManager(layoutManager);
+        adapter = new YogaCourseAdapter(new ArrayList<>());
         recyclerView.setAdapter(adapter);
+        recyclerView.addOnScrollListener(new EndlessScrollListener(layoutManager) {
+            @Override
+            protected void onLoadMore() {
+                loadNextCoursePage();
+            }
+        });
+        reloadCourses();
+    }
+
+    private void reloadCourses() {
+        // A reload supersedes any page still in flight
+        if (pageTask != null) {
+            pageTask.cancel(false);
+        }
+        pageTask = repository.getCourseSummariesPage(0, PAGE_SIZE, YogaRepository.Callback.of(page -> {
+            adapter.updateCourses(page);
+            onCoursePageLoaded(page, PAGE_SIZE);
+        }, this::onCoursePageFailed));
+    }
+
+    // Re-reads every loaded summary with one query; the diffing adapter rebinds only the cards
+    // whose figures changed
+    private void refreshLoadedCourses() {
+        if (pageTask != null) {
+            pageTask.cancel(false);
+        }
+        int limit = Math.max(adapter.getItemCount(), PAGE_SIZE);
+        pageTask = repository.getCourseSummariesPage(0, limit, YogaRepository.Callback.of(page -> {
+            adapter.updateCourses(page);
+            onCoursePageLoaded(page, limit);
+        }, this::onCoursePageFailed));
+    }
+
+    private void loadNextCoursePage() {
+        if (!hasMoreCourses || pageTask != null) {
+            return;
+        }
+        pageTask = repository.getCourseSummariesPage(lastCourseId, PAGE_SIZE, YogaRepository.Callback.of(page -> {
+            adapter.appendCourses(page);
+            onCoursePageLoaded(page, PAGE_SIZE);
+        }, this::onCoursePageFailed));
+    }
+
+    private void onCoursePageLoaded(List<CourseSummary> page, int limit) {
+        pageTask = null;
+        hasMoreCourses = page.size() == limit;
+        lastCourseId = page.isEmpty() ? 0 : page.get(page.size() - 1).getCourse().getId();
+    }
+
+    // Leaves the paging position alone so the next scroll retries the same page
+    private void onCoursePageFailed(Throwable error) {
+        pageTask = null;
+    }
+
+    private void applyPendingChanges() {
+        if (pendingFullReload) {
+            pendingFullReload = false;
+            pendingSummaryRefresh = false;
+            pendingCourseIds.clear();
+            reloadCourses();
+            return;
+        }
+        if (pendingSummaryRefresh || pendingCourseIds.size() > PAGE_SIZE) {
+            pendingSummaryRefresh = false;
+            pendingCourseIds.clear();
+            refreshLoadedCourses();
+            return;
+        }
+        if (pendingCourseIds.isEmpty()) {
+            return;
+        }
+
+        Set<Integer> changedIds = new HashSet<>(pendingCourseIds);
+        pendingCourseIds.clear();
+        repository.getCourseSummariesByIds(changedIds, changed -> {
+            int loadedThroughId = hasMoreCourses ? lastCourseId : Integer.MAX_VALUE;
+            for (CourseSummary summary : changed) {
+                changedIds.remove(summary.getCourse().getId());
+                adapter.upsertCourse(summary, loadedThroughId);
+            }
+            // Whatever is left no longer exists
+            for (int id : changedIds) {
+                adapter.removeCourse(id);
+            }
+        });
     }
 
     private void setupFab() {
@@ -88,28 +242,29 @@ public class MainActivity extends AppCompatActivity {
     }
 
     private void syncData() {
-        FirebaseSync firebaseSync = new FirebaseSync(this, new FirebaseSync.SyncCallback() {
-            @Override
-            public void onSuccess() {
-                adapter.updateCourses(dbHelper.getAllYogaCourses());
-            }
+        // Joins the run already in flight rather than starting a second one
+        syncScheduler.syncNow();
+    }
 
-            @Override
-            public void onError(String error) {
-                // Error is already shown via Toast in FirebaseSync
-            }
-        });
-        firebaseSync.syncToCloud();
+    private void showSyncReport(SyncReport report) {
+        if (report.getBatchesSent() > 0) {
+            Toast.makeText(this, getString(R.string.sync_complete_report,
+                    report.getRecordsSent(), report.getBatchesSent()), Toast.LENGTH_SHORT).show();
+        } else if (report.getRecordsReceived() > 0) {
+            MergeReport merged = report.getMerge();
+            Toast.makeText(this, getString(R.string.sync_complete_received,
+                    report.getRecordsReceived(), merged.getInserted(), merged.getUpdated(),
+                    merged.getConflicts()), Toast.LENGTH_SHORT).show();
+        } else {
+            Toast.makeText(this, R.string.sync_complete, Toast.LENGTH_SHORT).show();
+        }
     }
 
     private void resetDatabase() {
         // Danger: clears all data.
-        // Recreate the helper with a new writable DB and drop/recreate tables via onUpgrade logic.
-        // Simplest safe approach: delete and recreate by bumping the version is heavy; instead, use helper's writable DB.
-        // Here, we will delete all rows from tables using helper methods.
-        getApplicationContext().deleteDatabase("YogaAdmin.db");
-        dbHelper = new DatabaseHelper(this);
-        adapter.updateCourses(dbHelper.getAllYogaCourses());
+        // The shared helper empties every table in one transaction, leaving its connection open.
+        // The reset notifies observers, which reloads the list
+        repository.resetDatabase(null);
     }
 
     private void setupNetworkReceiver() {
@@ -120,15 +275,26 @@ public class MainActivity extends AppCompatActivity {
     @Override
     protected void onResume() {
         super.onResume();
-        // Refresh the list when returning to this activity
-        if (adapter != null) {
-            adapter.updateCourses(dbHelper.getAllYogaCourses());
-        }
+        resumed = true;
+        // Only rows written while this screen was in the background are refreshed
+        applyPendingChanges();
+    }
+
+    @Override
+    protected void onPause() {
+        super.onPause();
+        resumed = false;
     }
 
     @Override
     protected void onDestroy() {
         super.onDestroy();
+        repository.getChangeNotifier().unregister(courseObserver);
+        repository.getChangeNotifier().unregister(scheduleObserver);
+        syncScheduler.removeListener(syncListener);
+        if (pageTask != null) {
+            pageTask.cancel(false);
+        }
         if (networkReceiver != null) {
             unregisterReceiver(networkReceiver);
         }
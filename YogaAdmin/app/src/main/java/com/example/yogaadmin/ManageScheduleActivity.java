@@ -3,13 +3,15 @@ package com.example.yogaadmin;
 import android.app.DatePickerDialog;
 import android.os.Bundle;
 import android.view.MenuItem;
+import android.widget.AutoCompleteTextView;
 import android.widget.Button;
 import android.widget.Toast;
 
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.appcompat.widget.Toolbar;
 
-import com.example.yogaadmin.db.DatabaseHelper;
+import com.example.yogaadmin.adapters.TeacherSuggestionAdapter;
+import com.example.yogaadmin.db.YogaRepository;
 import com.example.yogaadmin.models.Schedule;
 import com.example.yogaadmin.models.YogaCourse;
 import com.google.android.material.switchmaterial.SwitchMaterial;
@@ -26,7 +28,7 @@ public class ManageScheduleActivity extends AppCompatActivity {
     public static final String EXTRA_COURSE_ID = "course_id";
     public static final String EXTRA_SCHEDULE_ID = "schedule_id";
 
-    private DatabaseHelper dbHelper;
+    private YogaRepository repository;
     private YogaCourse course;
     private Schedule schedule;
     private Calendar selectedDate;
@@ -34,16 +36,17 @@ public class ManageScheduleActivity extends AppCompatActivity {
     private TextInputLayout dateLayout;
     private TextInputLayout teacherLayout;
     private TextInputEditText dateInput;
-    private TextInputEditText teacherInput;
+    private AutoCompleteTextView teacherInput;
     private TextInputEditText commentsInput;
     private SwitchMaterial cancelledSwitch;
+    private Button saveButton;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_manage_schedule);
 
-        dbHelper = new DatabaseHelper(this);
+        repository = YogaAdminApp.getRepository(this);
         setupViews();
         loadData();
     }
@@ -60,14 +63,17 @@ public class ManageScheduleActivity extends AppCompatActivity {
         teacherLayout = findViewById(R.id.teacherLayout);
         dateInput = findViewById(R.id.dateInput);
         teacherInput = findViewById(R.id.teacherInput);
+        teacherInput.setAdapter(new TeacherSuggestionAdapter(this, repository));
         commentsInput = findViewById(R.id.commentsInput);
         cancelledSwitch = findViewById(R.id.cancelledSwitch);
 
-        Button saveButton = findViewById(R.id.saveButton);
+        saveButton = findViewById(R.id.saveButton);
         Button cancelButton = findViewById(R.id.cancelButton);
 
         dateInput.setOnClickListener(v -> showDatePicker());
         saveButton.setOnClickListener(v -> saveSchedule());
+        // Enabled once the course (and schedule, when editing) has loaded
+        saveButton.setEnabled(false);
         cancelButton.setOnClickListener(v -> finish());
     }
 
@@ -79,7 +85,11 @@ public class ManageScheduleActivity extends AppCompatActivity {
             return;
         }
 
-        course = dbHelper.getYogaCourse(courseId);
+        repository.getYogaCourse(courseId, this::onCourseLoaded);
+    }
+
+    private void onCourseLoaded(YogaCourse loaded) {
+        course = loaded;
         if (course == null) {
             Toast.makeText(this, "Error: Course not found", Toast.LENGTH_SHORT).show();
             finish();
@@ -90,35 +100,7 @@ public class ManageScheduleActivity extends AppCompatActivity {
         if (scheduleId != -1) {
             // Edit existing schedule
             // Load from DB and prefill
-            for (Schedule s : dbHelper.getSchedulesForCourse(course.getId())) {
-                if (s.getId() == scheduleId) {
-                    schedule = s;
-                    break;
-                }
-            }
-
-            if (schedule != null) {
-                if (getSupportActionBar() != null) {
-                    getSupportActionBar().setTitle("Edit Schedule");
-                }
-                try {
-                    SimpleDateFormat df = new SimpleDateFormat("dd/MM/yyyy", Locale.UK);
-                    Date parsed = df.parse(schedule.getDate());
-                    selectedDate = Calendar.getInstance();
-                    if (parsed != null) selectedDate.setTime(parsed);
-                } catch (ParseException ignored) {
-                    selectedDate = Calendar.getInstance();
-                }
-
-                dateInput.setText(schedule.getDate());
-                teacherInput.setText(schedule.getTeacher());
-                commentsInput.setText(schedule.getComments());
-                cancelledSwitch.setChecked(schedule.isCancelled());
-            } else {
-                Toast.makeText(this, "Error: Schedule not found", Toast.LENGTH_SHORT).show();
-                finish();
-                return;
-            }
+            repository.getSchedule(scheduleId, this::onScheduleLoaded);
         } else {
             // New schedule
             if (getSupportActionBar() != null) {
@@ -126,6 +108,34 @@ public class ManageScheduleActivity extends AppCompatActivity {
             }
             selectedDate = Calendar.getInstance();
             updateDateDisplay();
+            saveButton.setEnabled(true);
+        }
+    }
+
+    private void onScheduleLoaded(Schedule loaded) {
+        schedule = loaded;
+        if (schedule != null && schedule.getYogaCourseId() == course.getId()) {
+            if (getSupportActionBar() != null) {
+                getSupportActionBar().setTitle("Edit Schedule");
+            }
+            try {
+                SimpleDateFormat df = new SimpleDateFormat("dd/MM/yyyy", Locale.UK);
+                Date parsed = df.parse(schedule.getDate());
+                selectedDate = Calendar.getInstance();
+                if (parsed != null) selectedDate.setTime(parsed);
+            } catch (ParseException ignored) {
+                selectedDate = Calendar.getInstance();
+            }
+
+            dateInput.setText(schedule.getDate());
+            // No dropdown for the prefilled name
+            teacherInput.setText(schedule.getTeacher(), false);
+            commentsInput.setText(schedule.getComments());
+            cancelledSwitch.setChecked(schedule.isCancelled());
+            saveButton.setEnabled(true);
+        } else {
+            Toast.makeText(this, "Error: Schedule not found", Toast.LENGTH_SHORT).show();
+            finish();
         }
     }
 
@@ -201,22 +211,28 @@ public class ManageScheduleActivity extends AppCompatActivity {
         schedule.setComments(commentsInput.getText().toString().trim());
         schedule.setCancelled(cancelledSwitch.isChecked());
 
+        // Prevent a second tap from queueing a duplicate write
+        saveButton.setEnabled(false);
         if (schedule.getId() == 0) {
-            long result = dbHelper.addSchedule(schedule);
-            if (result != -1) {
-                Toast.makeText(this, "Schedule saved successfully", Toast.LENGTH_SHORT).show();
-                finish();
-            } else {
-                Toast.makeText(this, "Error saving schedule", Toast.LENGTH_SHORT).show();
-            }
+            repository.addSchedule(schedule, result -> {
+                if (result != -1) {
+                    Toast.makeText(this, "Schedule saved successfully", Toast.LENGTH_SHORT).show();
+                    finish();
+                } else {
+                    Toast.makeText(this, "Error saving schedule", Toast.LENGTH_SHORT).show();
+                    saveButton.setEnabled(true);
+                }
+            });
         } else {
-            int rows = dbHelper.updateSchedule(schedule);
-            if (rows > 0) {
-                Toast.makeText(this, "Schedule updated", Toast.LENGTH_SHORT).show();
-                finish();
-            } else {
-                Toast.makeText(this, "Error updating schedule", Toast.LENGTH_SHORT).show();
-            }
+            repository.updateSchedule(schedule, rows -> {
+                if (rows > 0) {
+                    Toast.makeText(this, "Schedule updated", Toast.LENGTH_SHORT).show();
+                    finish();
+                } else {
+                    Toast.makeText(this, "Error updating schedule", Toast.LENGTH_SHORT).show();
+                    saveButton.setEnabled(true);
+                }
+            });
         }
     }
 
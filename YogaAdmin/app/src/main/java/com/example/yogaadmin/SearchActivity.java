@@ -15,35 +15,41 @@ import androidx.appcompat.widget.Toolbar;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
+import com.example.yogaadmin.adapters.EndlessScrollListener;
 import com.example.yogaadmin.adapters.SearchResultAdapter;
-import com.example.yogaadmin.db.DatabaseHelper;
-import com.example.yogaadmin.models.Schedule;
-import com.example.yogaadmin.models.YogaCourse;
+import com.example.yogaadmin.adapters.TeacherSuggestionAdapter;
+import com.example.yogaadmin.db.ScheduleSearchQuery;
+import com.example.yogaadmin.db.SearchPipeline;
+import com.example.yogaadmin.models.SearchResult;
+import com.example.yogaadmin.utils.DateUtils;
 import com.google.android.material.textfield.TextInputEditText;
 
 import java.text.SimpleDateFormat;
-import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.List;
 import java.util.Locale;
 
 public class SearchActivity extends AppCompatActivity {
-    private DatabaseHelper dbHelper;
+    private static final int PAGE_SIZE = 50;
+
+    private SearchPipeline searchPipeline;
     private SearchResultAdapter adapter;
     private Calendar selectedDate;
 
-    private TextInputEditText teacherSearchInput;
+    private AutoCompleteTextView teacherSearchInput;
     private TextInputEditText dateSearchInput;
     private AutoCompleteTextView dayOfWeekSearchInput;
     private TextView noResultsText;
     private RecyclerView searchResultsRecyclerView;
+    private SearchResult lastResult;
+    private boolean hasMoreResults;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_search);
 
-        dbHelper = new DatabaseHelper(this);
+        searchPipeline = new SearchPipeline(YogaAdminApp.getRepository(this), PAGE_SIZE, this::onResultPageLoaded);
         setupViews();
         setupSearchListeners();
     }
@@ -57,6 +63,7 @@ public class SearchActivity extends AppCompatActivity {
         }
 
         teacherSearchInput = findViewById(R.id.teacherSearchInput);
+        teacherSearchInput.setAdapter(new TeacherSuggestionAdapter(this, YogaAdminApp.getRepository(this)));
         dateSearchInput = findViewById(R.id.dateSearchInput);
         dayOfWeekSearchInput = findViewById(R.id.dayOfWeekSearchInput);
         noResultsText = findViewById(R.id.noResultsText);
@@ -68,9 +75,16 @@ public class SearchActivity extends AppCompatActivity {
         dayOfWeekSearchInput.setAdapter(daysAdapter);
 
         // Setup RecyclerView
-        searchResultsRecyclerView.setLayoutManager(new LinearLayoutManager(this));
+        LinearLayoutManager layoutManager = new LinearLayoutManager(this);
+        searchResultsRecyclerView.setLayoutManager(layoutManager);
         adapter = new SearchResultAdapter();
         searchResultsRecyclerView.setAdapter(adapter);
+        searchResultsRecyclerView.addOnScrollListener(new EndlessScrollListener(layoutManager) {
+            @Override
+            protected void onLoadMore() {
+                loadNextResultPage();
+            }
+        });
 
         // Setup date picker
         dateSearchInput.setOnClickListener(v -> showDatePicker());
@@ -86,7 +100,7 @@ public class SearchActivity extends AppCompatActivity {
 
             @Override
             public void afterTextChanged(Editable s) {
-                performSearch();
+                searchPipeline.submit(buildQuery());
             }
         });
 
@@ -99,7 +113,7 @@ public class SearchActivity extends AppCompatActivity {
 
             @Override
             public void afterTextChanged(Editable s) {
-                performSearch();
+                searchPipeline.submit(buildQuery());
             }
         });
     }
@@ -116,7 +130,7 @@ public class SearchActivity extends AppCompatActivity {
                     selectedDate.set(Calendar.MONTH, month);
                     selectedDate.set(Calendar.DAY_OF_MONTH, dayOfMonth);
                     updateDateDisplay();
-                    performSearch();
+                    searchPipeline.submitNow(buildQuery());
                 },
                 selectedDate.get(Calendar.YEAR),
                 selectedDate.get(Calendar.MONTH),
@@ -130,43 +144,39 @@ public class SearchActivity extends AppCompatActivity {
         dateSearchInput.setText(dateFormat.format(selectedDate.getTime()));
     }
 
-    private void performSearch() {
-        String teacherQuery = teacherSearchInput.getText().toString().trim();
+    private ScheduleSearchQuery buildQuery() {
+        String textQuery = teacherSearchInput.getText().toString().trim();
         String dateQuery = dateSearchInput.getText().toString().trim();
         String dayQuery = dayOfWeekSearchInput.getText().toString().trim();
 
-        List<SearchResult> results = new ArrayList<>();
-
-        if (!teacherQuery.isEmpty()) {
-            // Search by teacher name
-            List<Schedule> schedules = dbHelper.searchSchedulesByTeacher(teacherQuery);
-            for (Schedule schedule : schedules) {
-                YogaCourse course = dbHelper.getYogaCourse(schedule.getYogaCourseId());
-                if (course != null) {
-                    results.add(new SearchResult(course, schedule));
-                }
-            }
+        ScheduleSearchQuery query = new ScheduleSearchQuery();
+        if (!textQuery.isEmpty()) {
+            query.setText(textQuery);
+        }
+        if (!dateQuery.isEmpty()) {
+            query.setDate(DateUtils.parseEpochDay(dateQuery));
+        }
+        if (!dayQuery.isEmpty()) {
+            query.setDayOfWeek(DateUtils.dayOfWeekFromName(dayQuery));
         }
 
-        if (!dateQuery.isEmpty() || !dayQuery.isEmpty()) {
-            // Search by date or day of week
-            List<YogaCourse> courses = dbHelper.getAllYogaCourses();
-            for (YogaCourse course : courses) {
-                if (!dayQuery.isEmpty() && !course.getDayOfWeek().equalsIgnoreCase(dayQuery)) {
-                    continue;
-                }
-
-                List<Schedule> schedules = dbHelper.getSchedulesForCourse(course.getId());
-                for (Schedule schedule : schedules) {
-                    if (!dateQuery.isEmpty() && !schedule.getDate().equals(dateQuery)) {
-                        continue;
-                    }
-                    results.add(new SearchResult(course, schedule));
-                }
-            }
+        return query;
+    }
+
+    private void loadNextResultPage() {
+        if (hasMoreResults) {
+            searchPipeline.loadNextPage(lastResult);
         }
+    }
 
-        updateSearchResults(results);
+    private void onResultPageLoaded(List<SearchResult> page, boolean firstPage) {
+        if (firstPage) {
+            updateSearchResults(page);
+        } else {
+            adapter.appendResults(page);
+        }
+        hasMoreResults = page.size() == PAGE_SIZE;
+        lastResult = page.isEmpty() ? null : page.get(page.size() - 1);
     }
 
     private void updateSearchResults(List<SearchResult> results) {
@@ -180,6 +190,12 @@ public class SearchActivity extends AppCompatActivity {
         }
     }
 
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        searchPipeline.cancel();
+    }
+
     @Override
     public boolean onOptionsItemSelected(MenuItem item) {
         if (item.getItemId() == android.R.id.home) {
@@ -188,22 +204,4 @@ public class SearchActivity extends AppCompatActivity {
         }
         return super.onOptionsItemSelected(item);
     }
-
-    public static class SearchResult {
-        private final YogaCourse course;
-        private final Schedule schedule;
-
-        public SearchResult(YogaCourse course, Schedule schedule) {
-            this.course = course;
-            this.schedule = schedule;
-        }
-
-        public YogaCourse getCourse() {
-            return course;
-        }
-
-        public Schedule getSchedule() {
-            return schedule;
-        }
-    }
-}
\ No newline at end of file
+}
@@ -1,13 +1,59 @@
 package com.example.yogaadmin;
 
 import android.app.Application;
+import android.content.Context;
+import android.content.pm.ApplicationInfo;
+import android.os.StrictMode;
 
+import com.example.yogaadmin.db.DatabaseHelper;
+import com.example.yogaadmin.db.YogaRepository;
+import com.example.yogaadmin.sync.SyncScheduler;
 import com.google.firebase.FirebaseApp;
 
 public class YogaAdminApp extends Application {
+    private DatabaseHelper databaseHelper;
+    private YogaRepository repository;
+    private SyncScheduler syncScheduler;
+
     @Override
     public void onCreate() {
         super.onCreate();
+        if ((getApplicationInfo().flags & ApplicationInfo.FLAG_DEBUGGABLE) != 0) {
+            // Flags any database access that slips back onto the main thread
+            StrictMode.setThreadPolicy(new StrictMode.ThreadPolicy.Builder()
+                    .detectDiskReads()
+                    .detectDiskWrites()
+                    .penaltyLog()
+                    .build());
+        }
         FirebaseApp.initializeApp(this);
+        databaseHelper = new DatabaseHelper(this);
+        repository = new YogaRepository(databaseHelper);
+        syncScheduler = new SyncScheduler(this, repository);
+        syncScheduler.start();
+    }
+
+    public DatabaseHelper getDatabaseHelper() {
+        return databaseHelper;
+    }
+
+    public YogaRepository getRepository() {
+        return repository;
+    }
+
+    public SyncScheduler getSyncScheduler() {
+        return syncScheduler;
+    }
+
+    public static DatabaseHelper getDatabase(Context context) {
+        return ((YogaAdminApp) context.getApplicationContext()).getDatabaseHelper();
+    }
+
+    public static YogaRepository getRepository(Context context) {
+        return ((YogaAdminApp) context.getApplicationContext()).getRepository();
+    }
+
+    public static SyncScheduler getSyncScheduler(Context context) {
+        return ((YogaAdminApp) context.getApplicationContext()).getSyncScheduler();
     }
 }
\ No newline at end of file
@@ -0,0 +1,30 @@
+package com.example.yogaadmin.adapters;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+
+// Asks for the next page once the user scrolls within PREFETCH_DISTANCE rows of the end.
+// The request is posted so the adapter is never changed in the middle of a scroll pass.
+public abstract class EndlessScrollListener extends RecyclerView.OnScrollListener {
+    private static final int PREFETCH_DISTANCE = 10;
+
+    private final LinearLayoutManager layoutManager;
+
+    public EndlessScrollListener(LinearLayoutManager layoutManager) {
+        this.layoutManager = layoutManager;
+    }
+
+    @Override
+    public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+        if (dy <= 0) {
+            return;
+        }
+        int lastVisible = layoutManager.findLastVisibleItemPosition();
+        if (lastVisible >= layoutManager.getItemCount() - PREFETCH_DISTANCE) {
+            recyclerView.post(this::onLoadMore);
+        }
+    }
+
+    protected abstract void onLoadMore();
+}
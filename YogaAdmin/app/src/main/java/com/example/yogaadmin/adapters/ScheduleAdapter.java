@@ -8,6 +8,8 @@ import android.widget.PopupMenu;
 import android.widget.TextView;
 
 import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.ListAdapter;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.example.yogaadmin.R;
@@ -15,8 +17,28 @@ import com.example.yogaadmin.models.Schedule;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
 
-public class ScheduleAdapter extends RecyclerView.Adapter<ScheduleAdapter.ViewHolder> {
+public class ScheduleAdapter extends ListAdapter<Schedule, ScheduleAdapter.ViewHolder> {
+    private static final DiffUtil.ItemCallback<Schedule> DIFF_CALLBACK = new DiffUtil.ItemCallback<Schedule>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull Schedule oldSchedule, @NonNull Schedule newSchedule) {
+            return oldSchedule.getId() == newSchedule.getId();
+        }
+
+        // Only what the row shows; a sync flipping isSynced should not rebind it
+        @Override
+        public boolean areContentsTheSame(@NonNull Schedule oldSchedule, @NonNull Schedule newSchedule) {
+            return oldSchedule.getEpochDay() == newSchedule.getEpochDay()
+                    && Objects.equals(oldSchedule.getTeacher(), newSchedule.getTeacher())
+                    && Objects.equals(oldSchedule.getComments(), newSchedule.getComments())
+                    && oldSchedule.getCurrentEnrollment() == newSchedule.getCurrentEnrollment()
+                    && oldSchedule.isCancelled() == newSchedule.isCancelled();
+        }
+    };
+
+    // Last list handed to submitList. Edits build on this rather than getCurrentList(), which
+    // lags behind until the background diff has been applied.
     private List<Schedule> schedules;
     private final OnScheduleClickListener listener;
 
@@ -28,13 +50,72 @@ public class ScheduleAdapter extends RecyclerView.Adapter<ScheduleAdapter.ViewHo
     }
 
     public ScheduleAdapter(OnScheduleClickListener listener) {
+        super(DIFF_CALLBACK);
         this.schedules = new ArrayList<>();
         this.listener = listener;
+        setHasStableIds(true);
     }
 
     public void setSchedules(List<Schedule> schedules) {
-        this.schedules = schedules;
-        notifyDataSetChanged();
+        submit(new ArrayList<>(schedules));
+    }
+
+    public void appendSchedules(List<Schedule> page) {
+        List<Schedule> next = new ArrayList<>(schedules);
+        next.addAll(page);
+        submit(next);
+    }
+
+    // Replaces the row with the same id, or inserts it in (date, id) order when it sorts at or
+    // before loadedThrough; pass null when every page is loaded
+    public void upsertSchedule(Schedule schedule, Schedule loadedThrough) {
+        List<Schedule> next = new ArrayList<>(schedules);
+        int existing = indexOf(schedule.getId());
+        if (existing != -1) {
+            next.remove(existing);
+        }
+        if (loadedThrough != null && compare(schedule, loadedThrough) > 0) {
+            if (existing != -1) {
+                submit(next);
+            }
+            return;
+        }
+        int position = 0;
+        while (position < next.size() && compare(next.get(position), schedule) < 0) {
+            position++;
+        }
+        next.add(position, schedule);
+        submit(next);
+    }
+
+    public void removeSchedule(int scheduleId) {
+        int position = indexOf(scheduleId);
+        if (position != -1) {
+            List<Schedule> next = new ArrayList<>(schedules);
+            next.remove(position);
+            submit(next);
+        }
+    }
+
+    // Submitted lists are never modified afterwards; the differ reads them on a background thread
+    private void submit(List<Schedule> next) {
+        schedules = next;
+        submitList(next);
+    }
+
+    private int indexOf(int scheduleId) {
+        for (int i = 0; i < schedules.size(); i++) {
+            if (schedules.get(i).getId() == scheduleId) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // Same order as DatabaseHelper.getSchedulesForCoursePage
+    private static int compare(Schedule a, Schedule b) {
+        int byDate = Long.compare(a.getEpochDay(), b.getEpochDay());
+        return byDate != 0 ? byDate : Integer.compare(a.getId(), b.getId());
     }
 
     @NonNull
@@ -47,13 +128,13 @@ public class ScheduleAdapter extends RecyclerView.Adapter<ScheduleAdapter.ViewHo
 
     @Override
     public void onBindViewHolder(@NonNull ViewHolder holder, int position) {
-        Schedule schedule = schedules.get(position);
+        Schedule schedule = getItem(position);
         holder.bind(schedule, listener);
     }
 
     @Override
-    public int getItemCount() {
-        return schedules.size();
+    public long getItemId(int position) {
+        return getItem(position).getId();
     }
 
     static class ViewHolder extends RecyclerView.ViewHolder {
@@ -7,29 +7,70 @@ import android.view.ViewGroup;
 import android.widget.TextView;
 
 import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.ListAdapter;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.example.yogaadmin.CourseDetailsActivity;
 import com.example.yogaadmin.R;
-import com.example.yogaadmin.SearchActivity.SearchResult;
 import com.example.yogaadmin.models.Schedule;
+import com.example.yogaadmin.models.SearchResult;
 import com.example.yogaadmin.models.YogaCourse;
 import com.google.android.material.card.MaterialCardView;
 
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
+import java.util.Objects;
 
-public class SearchResultAdapter extends RecyclerView.Adapter<SearchResultAdapter.ViewHolder> {
+public class SearchResultAdapter extends ListAdapter<SearchResult, SearchResultAdapter.ViewHolder> {
+    private static final DiffUtil.ItemCallback<SearchResult> DIFF_CALLBACK = new DiffUtil.ItemCallback<SearchResult>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull SearchResult oldResult, @NonNull SearchResult newResult) {
+            return oldResult.getSchedule().getId() == newResult.getSchedule().getId();
+        }
+
+        // Only what the card shows, so a result that survives a keystroke is not rebound
+        @Override
+        public boolean areContentsTheSame(@NonNull SearchResult oldResult, @NonNull SearchResult newResult) {
+            Schedule oldSchedule = oldResult.getSchedule();
+            Schedule newSchedule = newResult.getSchedule();
+            YogaCourse oldCourse = oldResult.getCourse();
+            YogaCourse newCourse = newResult.getCourse();
+            return oldSchedule.getEpochDay() == newSchedule.getEpochDay()
+                    && Objects.equals(oldSchedule.getTeacher(), newSchedule.getTeacher())
+                    && oldSchedule.isCancelled() == newSchedule.isCancelled()
+                    && oldCourse.getId() == newCourse.getId()
+                    && Objects.equals(oldCourse.getType(), newCourse.getType())
+                    && Objects.equals(oldCourse.getDayOfWeek(), newCourse.getDayOfWeek())
+                    && Objects.equals(oldCourse.getTime(), newCourse.getTime());
+        }
+    };
+
+    // Last list handed to submitList. Pages append to this rather than getCurrentList(), which
+    // lags behind until the background diff has been applied.
     private List<SearchResult> results;
 
     public SearchResultAdapter() {
+        super(DIFF_CALLBACK);
         this.results = new ArrayList<>();
+        setHasStableIds(true);
     }
 
     public void setResults(List<SearchResult> results) {
-        this.results = results;
-        notifyDataSetChanged();
+        submit(new ArrayList<>(results));
+    }
+
+    public void appendResults(List<SearchResult> page) {
+        List<SearchResult> next = new ArrayList<>(results);
+        next.addAll(page);
+        submit(next);
+    }
+
+    // Submitted lists are never modified afterwards; the differ reads them on a background thread
+    private void submit(List<SearchResult> next) {
+        results = next;
+        submitList(next);
     }
 
     @NonNull
@@ -42,13 +83,13 @@ public class SearchResultAdapter extends RecyclerView.Adapter<SearchResultAdapte
 
     @Override
     public void onBindViewHolder(@NonNull ViewHolder holder, int position) {
-        SearchResult result = results.get(position);
+        SearchResult result = getItem(position);
         holder.bind(result);
     }
 
     @Override
-    public int getItemCount() {
-        return results.size();
+    public long getItemId(int position) {
+        return getItem(position).getSchedule().getId();
     }
 
     static class ViewHolder extends RecyclerView.ViewHolder {
@@ -0,0 +1,67 @@
+package com.example.yogaadmin.adapters;
+
+import android.content.Context;
+import android.widget.ArrayAdapter;
+import android.widget.Filter;
+
+import androidx.annotation.NonNull;
+
+import com.example.yogaadmin.db.YogaRepository;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+// Dropdown of known teacher names for an AutoCompleteTextView, served from the in-memory
+// teacher index. Picking a suggestion keeps spellings consistent across schedules.
+public class TeacherSuggestionAdapter extends ArrayAdapter<String> {
+    private static final int MAX_SUGGESTIONS = 8;
+
+    private final YogaRepository repository;
+    private final List<String> suggestions = new ArrayList<>();
+
+    private final Filter filter = new Filter() {
+        // Runs on the Filter's worker thread, so the index may be built here on first use
+        @Override
+        protected FilterResults performFiltering(CharSequence constraint) {
+            List<String> found = constraint == null
+                    ? Collections.emptyList()
+                    : repository.suggestTeachers(constraint.toString(), MAX_SUGGESTIONS);
+            FilterResults results = new FilterResults();
+            results.values = found;
+            results.count = found.size();
+            return results;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        protected void publishResults(CharSequence constraint, FilterResults results) {
+            suggestions.clear();
+            if (results.values != null) {
+                suggestions.addAll((List<String>) results.values);
+            }
+            notifyDataSetChanged();
+        }
+    };
+
+    public TeacherSuggestionAdapter(Context context, YogaRepository repository) {
+        super(context, android.R.layout.simple_dropdown_item_1line);
+        this.repository = repository;
+    }
+
+    @Override
+    public int getCount() {
+        return suggestions.size();
+    }
+
+    @Override
+    public String getItem(int position) {
+        return suggestions.get(position);
+    }
+
+    @NonNull
+    @Override
+    public Filter getFilter() {
+        return filter;
+    }
+}
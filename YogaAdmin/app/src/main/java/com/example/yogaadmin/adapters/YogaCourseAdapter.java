@@ -7,20 +7,56 @@ import android.view.ViewGroup;
 import android.widget.TextView;
 
 import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.ListAdapter;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.example.yogaadmin.CourseDetailsActivity;
 import com.example.yogaadmin.R;
+import com.example.yogaadmin.models.CourseSummary;
 import com.example.yogaadmin.models.YogaCourse;
+import com.example.yogaadmin.utils.DateUtils;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
+import java.util.Objects;
 
-public class YogaCourseAdapter extends RecyclerView.Adapter<YogaCourseAdapter.ViewHolder> {
-    private List<YogaCourse> courses;
+// Renders the course overview from CourseSummary rows, so the list needs no per-course queries
+public class YogaCourseAdapter extends ListAdapter<CourseSummary, YogaCourseAdapter.ViewHolder> {
+    private static final DiffUtil.ItemCallback<CourseSummary> DIFF_CALLBACK = new DiffUtil.ItemCallback<CourseSummary>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull CourseSummary oldSummary, @NonNull CourseSummary newSummary) {
+            return oldSummary.getCourse().getId() == newSummary.getCourse().getId();
+        }
+
+        // Only what the row shows; a sync flipping isSynced should not rebind it
+        @Override
+        public boolean areContentsTheSame(@NonNull CourseSummary oldSummary, @NonNull CourseSummary newSummary) {
+            YogaCourse oldCourse = oldSummary.getCourse();
+            YogaCourse newCourse = newSummary.getCourse();
+            return oldSummary.getScheduleCount() == newSummary.getScheduleCount()
+                    && oldSummary.getNextSessionEpochDay() == newSummary.getNextSessionEpochDay()
+                    && oldSummary.getCancelledCount() == newSummary.getCancelledCount()
+                    && Double.compare(oldSummary.getAverageFillRate(), newSummary.getAverageFillRate()) == 0
+                    && Objects.equals(oldCourse.getType(), newCourse.getType())
+                    && Objects.equals(oldCourse.getTime(), newCourse.getTime())
+                    && Objects.equals(oldCourse.getDayOfWeek(), newCourse.getDayOfWeek())
+                    && Objects.equals(oldCourse.getDescription(), newCourse.getDescription())
+                    && Objects.equals(oldCourse.getDifficulty(), newCourse.getDifficulty())
+                    && oldCourse.getPrice() == newCourse.getPrice()
+                    && oldCourse.isActive() == newCourse.isActive();
+        }
+    };
+
+    // Last list handed to submitList. Edits build on this rather than getCurrentList(), which
+    // lags behind until the background diff has been applied.
+    private List<CourseSummary> courses;
 
-    public YogaCourseAdapter(List<YogaCourse> courses) {
-        this.courses = courses;
+    public YogaCourseAdapter(List<CourseSummary> courses) {
+        super(DIFF_CALLBACK);
+        setHasStableIds(true);
+        submit(new ArrayList<>(courses));
     }
 
     @NonNull
@@ -33,18 +69,62 @@ public class YogaCourseAdapter extends RecyclerView.Adapter<YogaCourseAdapter.Vi
 
     @Override
     public void onBindViewHolder(@NonNull ViewHolder holder, int position) {
-        YogaCourse course = courses.get(position);
-        holder.bind(course);
+        holder.bind(getItem(position));
     }
 
     @Override
-    public int getItemCount() {
-        return courses.size();
+    public long getItemId(int position) {
+        return getItem(position).getCourse().getId();
     }
 
-    public void updateCourses(List<YogaCourse> newCourses) {
-        this.courses = newCourses;
-        notifyDataSetChanged();
+    public void updateCourses(List<CourseSummary> newCourses) {
+        submit(new ArrayList<>(newCourses));
+    }
+
+    public void appendCourses(List<CourseSummary> page) {
+        List<CourseSummary> next = new ArrayList<>(courses);
+        next.addAll(page);
+        submit(next);
+    }
+
+    // Replaces the row with the same id, or inserts it in id order when it falls within the
+    // loaded range (ids up to loadedThroughId); rows past that range arrive with a later page
+    public void upsertCourse(CourseSummary summary, int loadedThroughId) {
+        int courseId = summary.getCourse().getId();
+        List<CourseSummary> next = new ArrayList<>(courses);
+        for (int i = 0; i < next.size(); i++) {
+            if (next.get(i).getCourse().getId() == courseId) {
+                next.set(i, summary);
+                submit(next);
+                return;
+            }
+        }
+        if (courseId > loadedThroughId) {
+            return;
+        }
+        int position = 0;
+        while (position < next.size() && next.get(position).getCourse().getId() < courseId) {
+            position++;
+        }
+        next.add(position, summary);
+        submit(next);
+    }
+
+    public void removeCourse(int courseId) {
+        for (int i = 0; i < courses.size(); i++) {
+            if (courses.get(i).getCourse().getId() == courseId) {
+                List<CourseSummary> next = new ArrayList<>(courses);
+                next.remove(i);
+                submit(next);
+                return;
+            }
+        }
+    }
+
+    // Submitted lists are never modified afterwards; the differ reads them on a background thread
+    private void submit(List<CourseSummary> next) {
+        courses = next;
+        submitList(next);
     }
 
     static class ViewHolder extends RecyclerView.ViewHolder {
@@ -52,6 +132,7 @@ public class YogaCourseAdapter extends RecyclerView.Adapter<YogaCourseAdapter.Vi
         TextView courseTimeText;
         TextView courseDetailsText;
         TextView coursePriceText;
+        TextView courseSummaryText;
 
         ViewHolder(View itemView) {
             super(itemView);
@@ -59,9 +140,11 @@ public class YogaCourseAdapter extends RecyclerView.Adapter<YogaCourseAdapter.Vi
             courseTimeText = itemView.findViewById(R.id.courseTimeText);
             courseDetailsText = itemView.findViewById(R.id.courseDetailsText);
             coursePriceText = itemView.findViewById(R.id.coursePriceText);
+            courseSummaryText = itemView.findViewById(R.id.courseSummaryText);
         }
 
-        void bind(final YogaCourse course) {
+        void bind(final CourseSummary summary) {
+            final YogaCourse course = summary.getCourse();
             courseTypeText.setText(course.getType());
             courseTimeText.setText(String.format("Time: %s on %s", course.getTime(), course.getDayOfWeek()));
             
@@ -72,10 +155,9 @@ public class YogaCourseAdapter extends RecyclerView.Adapter<YogaCourseAdapter.Vi
             courseDetailsText.setText(details);
             
             coursePriceText.setText(String.format(Locale.UK, "£%.2f", course.getPrice()));
+            courseSummaryText.setText(formatSummary(summary));
 
-            if (!course.isActive()) {
-                itemView.setAlpha(0.5f);
-            }
+            itemView.setAlpha(course.isActive() ? 1.0f : 0.5f);
 
             itemView.setOnClickListener(v -> {
                 Intent intent = new Intent(v.getContext(), CourseDetailsActivity.class);
@@ -83,5 +165,24 @@ public class YogaCourseAdapter extends RecyclerView.Adapter<YogaCourseAdapter.Vi
                 v.getContext().startActivity(intent);
             });
         }
+
+        // e.g. "12 sessions • Next: 24/10/2026 • 2 cancelled • 68% full"
+        private static String formatSummary(CourseSummary summary) {
+            if (summary.getScheduleCount() == 0) {
+                return "No sessions scheduled";
+            }
+            StringBuilder text = new StringBuilder(String.format(Locale.UK, "%d %s",
+                    summary.getScheduleCount(), summary.getScheduleCount() == 1 ? "session" : "sessions"));
+            if (summary.hasNextSession()) {
+                text.append(" • Next: ").append(DateUtils.formatEpochDay(summary.getNextSessionEpochDay()));
+            }
+            if (summary.getCancelledCount() > 0) {
+                text.append(String.format(Locale.UK, " • %d cancelled", summary.getCancelledCount()));
+            }
+            if (!Double.isNaN(summary.getAverageFillRate())) {
+                text.append(String.format(Locale.UK, " • %.0f%% full", summary.getAverageFillRate() * 100));
+            }
+            return text.toString();
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,49 @@
+package com.example.yogaadmin.db;
+
+import android.database.Cursor;
+
+import com.example.yogaadmin.models.Booking;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Resolves booking column positions once per cursor and builds bookings through the
+// hydration constructor.
+class BookingRowMapper {
+    private final int idIndex;
+    private final int customerIdIndex;
+    private final int scheduleIdIndex;
+    private final int statusIndex;
+    private final int createdAtIndex;
+    private final int lastModifiedIndex;
+
+    BookingRowMapper(Cursor cursor) {
+        idIndex = cursor.getColumnIndexOrThrow(DatabaseHelper.KEY_ID);
+        customerIdIndex = cursor.getColumnIndexOrThrow(DatabaseHelper.KEY_CUSTOMER_ID);
+        scheduleIdIndex = cursor.getColumnIndexOrThrow(DatabaseHelper.KEY_SCHEDULE_ID);
+        statusIndex = cursor.getColumnIndexOrThrow(DatabaseHelper.KEY_STATUS);
+        createdAtIndex = cursor.getColumnIndexOrThrow(DatabaseHelper.KEY_CREATED_AT);
+        lastModifiedIndex = cursor.getColumnIndexOrThrow(DatabaseHelper.KEY_LAST_MODIFIED);
+    }
+
+    Booking map(Cursor cursor) {
+        return new Booking(
+                cursor.getInt(idIndex),
+                cursor.getInt(customerIdIndex),
+                cursor.getInt(scheduleIdIndex),
+                cursor.getString(statusIndex),
+                cursor.getLong(createdAtIndex),
+                cursor.getLong(lastModifiedIndex));
+    }
+
+    static List<Booking> mapAll(Cursor cursor) {
+        List<Booking> bookings = new ArrayList<>(cursor.getCount());
+        if (cursor.moveToFirst()) {
+            BookingRowMapper mapper = new BookingRowMapper(cursor);
+            do {
+                bookings.add(mapper.map(cursor));
+            } while (cursor.moveToNext());
+        }
+        return bookings;
+    }
+}
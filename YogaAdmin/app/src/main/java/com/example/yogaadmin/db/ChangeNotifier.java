@@ -0,0 +1,74 @@
+package com.example.yogaadmin.db;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+// Tells screens which rows a write touched so they can patch their lists instead of reloading.
+// DatabaseHelper publishes after each write has committed; observers run on the main thread.
+public class ChangeNotifier {
+    public static final String COURSES = DatabaseHelper.TABLE_YOGA_COURSE;
+    public static final String SCHEDULES = DatabaseHelper.TABLE_SCHEDULE;
+
+    public interface Observer {
+        // ids is null when the whole table changed, e.g. after a database reset
+        void onChanged(String table, Set<Integer> ids);
+    }
+
+    private static final class Registration {
+        final String table;
+        final Observer observer;
+
+        Registration(String table, Observer observer) {
+            this.table = table;
+            this.observer = observer;
+        }
+    }
+
+    // Only touched on the main thread
+    private final List<Registration> registrations = new ArrayList<>();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    public void register(String table, Observer observer) {
+        registrations.add(new Registration(table, observer));
+    }
+
+    public void unregister(Observer observer) {
+        for (int i = registrations.size() - 1; i >= 0; i--) {
+            if (registrations.get(i).observer == observer) {
+                registrations.remove(i);
+            }
+        }
+    }
+
+    void publish(String table, int id) {
+        dispatch(table, Collections.singleton(id));
+    }
+
+    void publish(String table, Collection<Integer> ids) {
+        if (!ids.isEmpty()) {
+            dispatch(table, Collections.unmodifiableSet(new HashSet<>(ids)));
+        }
+    }
+
+    void publishAll(String table) {
+        dispatch(table, null);
+    }
+
+    private void dispatch(String table, Set<Integer> ids) {
+        mainHandler.post(() -> {
+            // Copy so an observer may unregister itself while being notified
+            for (Registration registration : new ArrayList<>(registrations)) {
+                if (registration.table.equals(table)) {
+                    registration.observer.onChanged(table, ids);
+                }
+            }
+        });
+    }
+}
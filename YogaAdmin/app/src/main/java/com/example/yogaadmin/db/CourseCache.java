@@ -0,0 +1,80 @@
+package com.example.yogaadmin.db;
+
+import android.util.LruCache;
+
+import com.example.yogaadmin.models.YogaCourse;
+
+// Id-keyed LRU cache in front of the yoga_course table. Entries are copies, so a screen editing
+// its YogaCourse can never change what another screen reads back.
+public class CourseCache {
+    static final int DEFAULT_MAX_SIZE = 64;
+
+    private final LruCache<Integer, YogaCourse> entries;
+    // Bumped on every write so a read that raced with a write does not cache the stale row
+    private long version;
+
+    CourseCache(int maxSize) {
+        this.entries = new LruCache<>(maxSize);
+    }
+
+    synchronized YogaCourse get(int id) {
+        YogaCourse cached = entries.get(id);
+        return cached == null ? null : new YogaCourse(cached);
+    }
+
+    synchronized long version() {
+        return version;
+    }
+
+    // Caches a row read from the database unless the cache was written since readVersion
+    synchronized void putIfUnchanged(YogaCourse course, long readVersion) {
+        if (version == readVersion) {
+            entries.put(course.getId(), new YogaCourse(course));
+        }
+    }
+
+    synchronized void put(YogaCourse course) {
+        version++;
+        entries.put(course.getId(), new YogaCourse(course));
+    }
+
+    synchronized void remove(int id) {
+        version++;
+        entries.remove(id);
+    }
+
+    synchronized void clear() {
+        version++;
+        entries.evictAll();
+    }
+
+    public synchronized void resize(int maxSize) {
+        entries.resize(maxSize);
+    }
+
+    public int hitCount() {
+        return entries.hitCount();
+    }
+
+    public int missCount() {
+        return entries.missCount();
+    }
+
+    public int evictionCount() {
+        return entries.evictionCount();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public int maxSize() {
+        return entries.maxSize();
+    }
+
+    @Override
+    public String toString() {
+        return "CourseCache[size=" + size() + "/" + maxSize() + ", hits=" + hitCount()
+                + ", misses=" + missCount() + ", evictions=" + evictionCount() + "]";
+    }
+}
@@ -0,0 +1,75 @@
+package com.example.yogaadmin.db;
+
+import android.database.Cursor;
+
+import com.example.yogaadmin.models.YogaCourse;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Resolves yoga_course column positions once per cursor and builds courses through the
+// hydration constructor, so reading rows never goes through the dirty-tracking setters.
+class CourseRowMapper {
+    private final int idIndex;
+    private final int dayOfWeekIndex;
+    private final int timeIndex;
+    private final int priceIndex;
+    private final int capacityIndex;
+    private final int durationIndex;
+    private final int typeIndex;
+    private final int descriptionIndex;
+    private final int isActiveIndex;
+    private final int difficultyIndex;
+    private final int equipmentIndex;
+    private final int lastModifiedIndex;
+    private final int isSyncedIndex;
+
+    CourseRowMapper(Cursor cursor) {
+        this(cursor, "");
+    }
+
+    // For joined queries that alias these columns as <prefix><column>
+    CourseRowMapper(Cursor cursor, String prefix) {
+        idIndex = cursor.getColumnIndexOrThrow(prefix + DatabaseHelper.KEY_ID);
+        dayOfWeekIndex = cursor.getColumnIndexOrThrow(prefix + DatabaseHelper.KEY_DAY_OF_WEEK);
+        timeIndex = cursor.getColumnIndexOrThrow(prefix + DatabaseHelper.KEY_TIME);
+        priceIndex = cursor.getColumnIndexOrThrow(prefix + DatabaseHelper.KEY_PRICE);
+        capacityIndex = cursor.getColumnIndexOrThrow(prefix + DatabaseHelper.KEY_CAPACITY);
+        durationIndex = cursor.getColumnIndexOrThrow(prefix + DatabaseHelper.KEY_DURATION);
+        typeIndex = cursor.getColumnIndexOrThrow(prefix + DatabaseHelper.KEY_TYPE);
+        descriptionIndex = cursor.getColumnIndexOrThrow(prefix + DatabaseHelper.KEY_DESCRIPTION);
+        isActiveIndex = cursor.getColumnIndexOrThrow(prefix + DatabaseHelper.KEY_IS_ACTIVE);
+        difficultyIndex = cursor.getColumnIndexOrThrow(prefix + DatabaseHelper.KEY_DIFFICULTY);
+        equipmentIndex = cursor.getColumnIndexOrThrow(prefix + DatabaseHelper.KEY_EQUIPMENT);
+        lastModifiedIndex = cursor.getColumnIndexOrThrow(prefix + DatabaseHelper.KEY_LAST_MODIFIED);
+        isSyncedIndex = cursor.getColumnIndexOrThrow(prefix + DatabaseHelper.KEY_IS_SYNCED);
+    }
+
+    YogaCourse map(Cursor cursor) {
+        return new YogaCourse(
+                cursor.getInt(idIndex),
+                cursor.getString(dayOfWeekIndex),
+                cursor.getString(timeIndex),
+                cursor.getFloat(priceIndex),
+                cursor.getInt(capacityIndex),
+                cursor.getInt(durationIndex),
+                cursor.getString(typeIndex),
+                cursor.getString(descriptionIndex),
+                cursor.getInt(isActiveIndex) == 1,
+                cursor.getString(difficultyIndex),
+                cursor.getString(equipmentIndex),
+                cursor.getLong(lastModifiedIndex),
+                cursor.getInt(isSyncedIndex) == 1);
+    }
+
+    static List<YogaCourse> mapAll(Cursor cursor) {
+        List<YogaCourse> courses = new ArrayList<>(cursor.getCount());
+        if (cursor.moveToFirst()) {
+            CourseRowMapper mapper = new CourseRowMapper(cursor);
+            do {
+                courses.add(mapper.map(cursor));
+            } while (cursor.moveToNext());
+        }
+        return courses;
+    }
+}
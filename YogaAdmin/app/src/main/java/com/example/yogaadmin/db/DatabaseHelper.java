@@ -3,55 +3,191 @@ package com.example.yogaadmin.db;
 import android.content.ContentValues;
 import android.content.Context;
 import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteConstraintException;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
+import android.os.CancellationSignal;
 
+import com.example.yogaadmin.models.Booking;
+import com.example.yogaadmin.models.CourseSummary;
+import com.example.yogaadmin.models.Customer;
+import com.example.yogaadmin.models.OutboxEntry;
 import com.example.yogaadmin.models.Schedule;
+import com.example.yogaadmin.models.SearchResult;
 import com.example.yogaadmin.models.YogaCourse;
+import com.example.yogaadmin.utils.DateUtils;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
 
 public class DatabaseHelper extends SQLiteOpenHelper {
     private static final String DATABASE_NAME = "YogaAdmin.db";
-    private static final int DATABASE_VERSION = 1;
+    private static final int DATABASE_VERSION = 12;
 
     // Table names
-    private static final String TABLE_YOGA_COURSE = "yoga_course";
-    private static final String TABLE_SCHEDULE = "schedule";
-    private static final String TABLE_CUSTOMER = "customer";
+    static final String TABLE_YOGA_COURSE = "yoga_course";
+    static final String TABLE_SCHEDULE = "schedule";
+    static final String TABLE_CUSTOMER = "customer";
+    static final String TABLE_BOOKING = "booking";
+    static final String TABLE_SYNC_OUTBOX = "sync_outbox";
+    static final String TABLE_SYNC_STATE = "sync_state";
+    static final String TABLE_SCHEDULE_FTS = "schedule_fts";
+    static final String TABLE_YOGA_COURSE_FTS = "yoga_course_fts";
+    static final String TABLE_SCHEDULE_SEARCH = "schedule_search";
 
     // Common column names
-    private static final String KEY_ID = "id";
-    private static final String KEY_LAST_MODIFIED = "last_modified";
-    private static final String KEY_IS_SYNCED = "is_synced";
+    static final String KEY_ID = "id";
+    static final String KEY_LAST_MODIFIED = "last_modified";
+    static final String KEY_IS_SYNCED = "is_synced";
     
     // YogaCourse columns
-    private static final String KEY_DAY_OF_WEEK = "day_of_week";
-    private static final String KEY_TIME = "time";
-    private static final String KEY_PRICE = "price";
-    private static final String KEY_CAPACITY = "capacity";
-    private static final String KEY_DURATION = "duration";
-    private static final String KEY_TYPE = "type";
-    private static final String KEY_DESCRIPTION = "description";
-    private static final String KEY_IS_ACTIVE = "is_active";
-    private static final String KEY_DIFFICULTY = "difficulty";
-    private static final String KEY_EQUIPMENT = "equipment";
+    static final String KEY_DAY_OF_WEEK = "day_of_week";
+    static final String KEY_TIME = "time";
+    static final String KEY_PRICE = "price";
+    static final String KEY_CAPACITY = "capacity";
+    static final String KEY_DURATION = "duration";
+    static final String KEY_TYPE = "type";
+    static final String KEY_DESCRIPTION = "description";
+    static final String KEY_IS_ACTIVE = "is_active";
+    static final String KEY_DIFFICULTY = "difficulty";
+    static final String KEY_EQUIPMENT = "equipment";
 
     // Schedule columns
-    private static final String KEY_DATE = "date";
-    private static final String KEY_TEACHER = "teacher";
-    private static final String KEY_COMMENTS = "comments";
-    private static final String KEY_YOGA_COURSE_ID = "yoga_course_id";
-    private static final String KEY_CURRENT_ENROLLMENT = "current_enrollment";
-    private static final String KEY_IS_CANCELLED = "is_cancelled";
+    static final String KEY_DATE = "date";
+    static final String KEY_TEACHER = "teacher";
+    static final String KEY_COMMENTS = "comments";
+    static final String KEY_YOGA_COURSE_ID = "yoga_course_id";
+    static final String KEY_CURRENT_ENROLLMENT = "current_enrollment";
+    static final String KEY_IS_CANCELLED = "is_cancelled";
+    static final String KEY_DATE_EPOCH_DAY = "date_epoch_day";
+    static final String KEY_WEEKDAY = "weekday";
 
     // Customer columns
-    private static final String KEY_NAME = "name";
-    private static final String KEY_EMAIL = "email";
+    static final String KEY_NAME = "name";
+    static final String KEY_EMAIL = "email";
 
+    // Booking columns
+    static final String KEY_CUSTOMER_ID = "customer_id";
+    static final String KEY_SCHEDULE_ID = "schedule_id";
+    static final String KEY_STATUS = "status";
+    static final String KEY_CREATED_AT = "created_at";
+
+    // Sync outbox columns
+    static final String KEY_SEQ = "seq";
+    static final String KEY_ENTITY = "entity";
+    static final String KEY_ENTITY_ID = "entity_id";
+    static final String KEY_OPERATION = "operation";
+    static final String KEY_CHANGED_FIELDS = "changed_fields";
+
+    // Sync state columns
+    static final String KEY_TABLE_NAME = "table_name";
+    static final String KEY_WATERMARK = "watermark";
+
+    // Rows strictly after (date_epoch_day, id) = (?, ?, ?); SQLite before 3.15 has no row values
+    private static final String DATE_KEYSET_PREDICATE = "(" + KEY_DATE_EPOCH_DAY + " > ? OR ("
+            + KEY_DATE_EPOCH_DAY + " = ? AND " + KEY_ID + " > ?))";
+
+    // Rows written between chances for other writers to get in during bulk upserts
+    private static final int BULK_CHUNK_SIZE = 500;
+
+    // Index names
+    private static final String INDEX_SCHEDULE_COURSE_DATE = "idx_schedule_course_date";
+    private static final String INDEX_SCHEDULE_COURSE_DAY = "idx_schedule_course_day";
+    private static final String INDEX_SCHEDULE_DAY = "idx_schedule_day";
+    private static final String INDEX_SCHEDULE_TEACHER = "idx_schedule_teacher";
+    private static final String INDEX_SCHEDULE_UNSYNCED = "idx_schedule_unsynced";
+    private static final String INDEX_YOGA_COURSE_UNSYNCED = "idx_yoga_course_unsynced";
+    private static final String INDEX_SYNC_OUTBOX_ENTITY = "idx_sync_outbox_entity";
+    private static final String INDEX_BOOKING_CUSTOMER_SCHEDULE = "idx_booking_customer_schedule";
+    private static final String INDEX_BOOKING_SCHEDULE_STATUS = "idx_booking_schedule_status";
+
+    private final CourseCache courseCache = new CourseCache(CourseCache.DEFAULT_MAX_SIZE);
+    private final ChangeNotifier changeNotifier = new ChangeNotifier();
+    // Schedule writes hold this index's lock, so a lazy build never interleaves with one
+    private final TeacherIndex teacherIndex = new TeacherIndex();
+
+    // Obtain the shared instance through YogaAdminApp.getDatabase(); the helper keeps
+    // its connection open for the lifetime of the process.
     public DatabaseHelper(Context context) {
-        super(context, DATABASE_NAME, null, DATABASE_VERSION);
+        this(context, DATABASE_NAME);
+    }
+
+    // Separate database file, for tests
+    DatabaseHelper(Context context, String databaseName) {
+        super(context.getApplicationContext(), databaseName, null, DATABASE_VERSION);
+        // WAL lets the list screens keep reading on their own connections while a sync writes.
+        setWriteAheadLoggingEnabled(true);
+    }
+
+    // Empties every table in one write transaction. The connection stays open, so reads running
+    // on the repository's pool finish against the old or the new contents rather than failing.
+    // Deleting the rows fires the search triggers; the outbox entries they log go with the rest.
+    public void resetDatabase() {
+        SQLiteDatabase db = this.getWritableDatabase();
+        db.beginTransaction();
+        try {
+            for (String table : new String[]{TABLE_BOOKING, TABLE_CUSTOMER, TABLE_SCHEDULE, TABLE_YOGA_COURSE,
+                    TABLE_SYNC_OUTBOX, TABLE_SYNC_STATE}) {
+                db.delete(table, null, null);
+            }
+            // New rows start from id 1 again, as they did on a fresh file
+            db.delete("sqlite_sequence", null, null);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        courseCache.clear();
+        teacherIndex.invalidate();
+        changeNotifier.publishAll(TABLE_YOGA_COURSE);
+        changeNotifier.publishAll(TABLE_SCHEDULE);
+    }
+
+    // Exposed for its hit/miss counters and for resizing.
+    public CourseCache getCourseCache() {
+        return courseCache;
+    }
+
+    public ChangeNotifier getChangeNotifier() {
+        return changeNotifier;
+    }
+
+    // Built from the schedule table on first use, so the first call reads the database. The
+    // connection is opened before taking the index's lock, as schedule writes do, so this never
+    // waits on the helper's lock while holding the index.
+    public TeacherIndex getTeacherIndex() {
+        SQLiteDatabase db = this.getReadableDatabase();
+        synchronized (teacherIndex) {
+            if (!teacherIndex.isBuilt()) {
+                teacherIndex.build(getTeacherSessionCounts(db));
+            }
+        }
+        return teacherIndex;
+    }
+
+    private static Map<String, Integer> getTeacherSessionCounts(SQLiteDatabase db) {
+        Map<String, Integer> counts = new HashMap<>();
+        try (Cursor cursor = db.rawQuery("SELECT " + KEY_TEACHER + ", COUNT(*) FROM " + TABLE_SCHEDULE
+                + " WHERE " + KEY_TEACHER + " IS NOT NULL GROUP BY " + KEY_TEACHER, null)) {
+            while (cursor.moveToNext()) {
+                counts.put(cursor.getString(0), cursor.getInt(1));
+            }
+        }
+        return counts;
+    }
+
+    private String getScheduleTeacher(SQLiteDatabase db, int scheduleId) {
+        try (Cursor cursor = db.query(TABLE_SCHEDULE, new String[]{KEY_TEACHER}, KEY_ID + " = ?",
+                new String[]{String.valueOf(scheduleId)}, null, null, null)) {
+            return cursor.moveToFirst() ? cursor.getString(0) : null;
+        }
     }
 
     @Override
@@ -93,14 +229,417 @@ public class DatabaseHelper extends SQLiteOpenHelper {
                 + KEY_EMAIL + " TEXT NOT NULL"
                 + ")";
         db.execSQL(CREATE_CUSTOMER_TABLE);
+
+        // The statements above are the version 1 schema; every later change is
+        // applied through the same migration steps that existing installs run.
+        onUpgrade(db, 1, DATABASE_VERSION);
+    }
+
+    // Enabled here rather than in onConfigure so migrations, which rebuild referenced tables,
+    // run with enforcement off; every connection opened afterwards enforces it.
+    @Override
+    public void onOpen(SQLiteDatabase db) {
+        super.onOpen(db);
+        if (!db.isReadOnly()) {
+            db.setForeignKeyConstraintsEnabled(true);
+        }
     }
 
     @Override
     public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
-        db.execSQL("DROP TABLE IF EXISTS " + TABLE_SCHEDULE);
-        db.execSQL("DROP TABLE IF EXISTS " + TABLE_CUSTOMER);
-        db.execSQL("DROP TABLE IF EXISTS " + TABLE_YOGA_COURSE);
-        onCreate(db);
+        for (int version = oldVersion + 1; version <= newVersion; version++) {
+            switch (version) {
+                case 2:
+                    migrateToVersion2(db);
+                    break;
+                case 3:
+                    migrateToVersion3(db);
+                    break;
+                case 4:
+                    migrateToVersion4(db);
+                    break;
+                case 5:
+                    migrateToVersion5(db);
+                    break;
+                case 6:
+                    migrateToVersion6(db);
+                    break;
+                case 7:
+                    migrateToVersion7(db);
+                    break;
+                case 8:
+                    migrateToVersion8(db);
+                    break;
+                case 9:
+                    migrateToVersion9(db);
+                    break;
+                case 10:
+                    migrateToVersion10(db);
+                    break;
+                case 11:
+                    migrateToVersion11(db);
+                    break;
+                case 12:
+                    migrateToVersion12(db);
+                    break;
+                default:
+                    throw new IllegalStateException("No migration to database version " + version);
+            }
+        }
+    }
+
+    // Version 2: secondary indexes for per-course schedule listing, teacher lookups
+    // and the unsynced-row scans done by FirebaseSync.
+    private void migrateToVersion2(SQLiteDatabase db) {
+        db.execSQL("CREATE INDEX IF NOT EXISTS " + INDEX_SCHEDULE_COURSE_DATE + " ON " + TABLE_SCHEDULE
+                + "(" + KEY_YOGA_COURSE_ID + ", " + KEY_DATE + ")");
+        db.execSQL("CREATE INDEX IF NOT EXISTS " + INDEX_SCHEDULE_TEACHER + " ON " + TABLE_SCHEDULE
+                + "(" + KEY_TEACHER + ")");
+        db.execSQL("CREATE INDEX IF NOT EXISTS " + INDEX_SCHEDULE_UNSYNCED + " ON " + TABLE_SCHEDULE
+                + "(" + KEY_ID + ") WHERE " + KEY_IS_SYNCED + " = 0");
+        db.execSQL("CREATE INDEX IF NOT EXISTS " + INDEX_YOGA_COURSE_UNSYNCED + " ON " + TABLE_YOGA_COURSE
+                + "(" + KEY_ID + ") WHERE " + KEY_IS_SYNCED + " = 0");
+    }
+
+    // Version 3: schedule dates as sortable epoch days plus the weekday (0 = Sunday) they
+    // fall on. The dd/MM/yyyy text column stays as written for older readers.
+    private void migrateToVersion3(SQLiteDatabase db) {
+        db.execSQL("ALTER TABLE " + TABLE_SCHEDULE + " ADD COLUMN " + KEY_DATE_EPOCH_DAY + " INTEGER");
+        db.execSQL("ALTER TABLE " + TABLE_SCHEDULE + " ADD COLUMN " + KEY_WEEKDAY + " INTEGER");
+        backfillScheduleDays(db);
+
+        db.execSQL("DROP INDEX IF EXISTS " + INDEX_SCHEDULE_COURSE_DATE);
+        db.execSQL("CREATE INDEX IF NOT EXISTS " + INDEX_SCHEDULE_COURSE_DAY + " ON " + TABLE_SCHEDULE
+                + "(" + KEY_YOGA_COURSE_ID + ", " + KEY_DATE_EPOCH_DAY + ")");
+        db.execSQL("CREATE INDEX IF NOT EXISTS " + INDEX_SCHEDULE_DAY + " ON " + TABLE_SCHEDULE
+                + "(" + KEY_DATE_EPOCH_DAY + ")");
+    }
+
+    // Version 4: FTS4 indexes over schedule teacher/comments and course type/description,
+    // kept in step with the base tables by triggers.
+    private void migrateToVersion4(SQLiteDatabase db) {
+        db.execSQL("CREATE VIRTUAL TABLE " + TABLE_SCHEDULE_FTS + " USING fts4("
+                + KEY_TEACHER + ", " + KEY_COMMENTS + ", prefix=\"2,3\")");
+        db.execSQL("CREATE VIRTUAL TABLE " + TABLE_YOGA_COURSE_FTS + " USING fts4("
+                + KEY_TYPE + ", " + KEY_DESCRIPTION + ", prefix=\"2,3\")");
+
+        createScheduleFtsTriggers(db);
+
+        db.execSQL("CREATE TRIGGER yoga_course_fts_insert AFTER INSERT ON " + TABLE_YOGA_COURSE + " BEGIN "
+                + "INSERT INTO " + TABLE_YOGA_COURSE_FTS + "(docid, " + KEY_TYPE + ", " + KEY_DESCRIPTION + ") "
+                + "VALUES (new." + KEY_ID + ", new." + KEY_TYPE + ", new." + KEY_DESCRIPTION + "); END");
+        db.execSQL("CREATE TRIGGER yoga_course_fts_update AFTER UPDATE OF " + KEY_TYPE + ", " + KEY_DESCRIPTION
+                + " ON " + TABLE_YOGA_COURSE + " BEGIN "
+                + "UPDATE " + TABLE_YOGA_COURSE_FTS + " SET " + KEY_TYPE + " = new." + KEY_TYPE + ", "
+                + KEY_DESCRIPTION + " = new." + KEY_DESCRIPTION + " WHERE docid = old." + KEY_ID + "; END");
+        db.execSQL("CREATE TRIGGER yoga_course_fts_delete AFTER DELETE ON " + TABLE_YOGA_COURSE + " BEGIN "
+                + "DELETE FROM " + TABLE_YOGA_COURSE_FTS + " WHERE docid = old." + KEY_ID + "; END");
+
+        db.execSQL("INSERT INTO " + TABLE_SCHEDULE_FTS + "(docid, " + KEY_TEACHER + ", " + KEY_COMMENTS + ") "
+                + "SELECT " + KEY_ID + ", " + KEY_TEACHER + ", " + KEY_COMMENTS + " FROM " + TABLE_SCHEDULE);
+        db.execSQL("INSERT INTO " + TABLE_YOGA_COURSE_FTS + "(docid, " + KEY_TYPE + ", " + KEY_DESCRIPTION + ") "
+                + "SELECT " + KEY_ID + ", " + KEY_TYPE + ", " + KEY_DESCRIPTION + " FROM " + TABLE_YOGA_COURSE);
+    }
+
+    // Version 5: the booking ledger linking customers to sessions. One row per customer and
+    // session; the unique index serves per-customer history and the schedule/status index serves
+    // rosters and enrollment counts.
+    private void migrateToVersion5(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + TABLE_BOOKING + "("
+                + KEY_ID + " INTEGER PRIMARY KEY AUTOINCREMENT,"
+                + KEY_CUSTOMER_ID + " INTEGER NOT NULL,"
+                + KEY_SCHEDULE_ID + " INTEGER NOT NULL,"
+                + KEY_STATUS + " TEXT NOT NULL DEFAULT '" + Booking.STATUS_BOOKED + "',"
+                + KEY_CREATED_AT + " INTEGER,"
+                + KEY_LAST_MODIFIED + " INTEGER,"
+                + "FOREIGN KEY(" + KEY_CUSTOMER_ID + ") REFERENCES " + TABLE_CUSTOMER + "(" + KEY_ID + "),"
+                + "FOREIGN KEY(" + KEY_SCHEDULE_ID + ") REFERENCES " + TABLE_SCHEDULE + "(" + KEY_ID + ")"
+                + ")");
+        db.execSQL("CREATE UNIQUE INDEX " + INDEX_BOOKING_CUSTOMER_SCHEDULE + " ON " + TABLE_BOOKING
+                + "(" + KEY_CUSTOMER_ID + ", " + KEY_SCHEDULE_ID + ")");
+        db.execSQL("CREATE INDEX " + INDEX_BOOKING_SCHEDULE_STATUS + " ON " + TABLE_BOOKING
+                + "(" + KEY_SCHEDULE_ID + ", " + KEY_STATUS + ")");
+    }
+
+    // Version 6: ON DELETE CASCADE from courses to their schedules and from schedules and
+    // customers to their bookings. SQLite cannot add the clause to an existing column, so both
+    // child tables are rebuilt; rows whose parent is already gone are dropped on the way.
+    private void migrateToVersion6(SQLiteDatabase db) {
+        rebuildTable(db, TABLE_SCHEDULE, KEY_ID + " INTEGER PRIMARY KEY AUTOINCREMENT,"
+                + KEY_DATE + " TEXT NOT NULL,"
+                + KEY_TEACHER + " TEXT NOT NULL,"
+                + KEY_COMMENTS + " TEXT,"
+                + KEY_YOGA_COURSE_ID + " INTEGER NOT NULL,"
+                + KEY_CURRENT_ENROLLMENT + " INTEGER DEFAULT 0,"
+                + KEY_IS_CANCELLED + " INTEGER DEFAULT 0,"
+                + KEY_LAST_MODIFIED + " INTEGER,"
+                + KEY_IS_SYNCED + " INTEGER DEFAULT 0,"
+                + KEY_DATE_EPOCH_DAY + " INTEGER,"
+                + KEY_WEEKDAY + " INTEGER,"
+                + "FOREIGN KEY(" + KEY_YOGA_COURSE_ID + ") REFERENCES " + TABLE_YOGA_COURSE + "(" + KEY_ID + ")"
+                + " ON DELETE CASCADE",
+                KEY_YOGA_COURSE_ID + " IN (SELECT " + KEY_ID + " FROM " + TABLE_YOGA_COURSE + ")");
+        db.execSQL("CREATE INDEX " + INDEX_SCHEDULE_COURSE_DAY + " ON " + TABLE_SCHEDULE
+                + "(" + KEY_YOGA_COURSE_ID + ", " + KEY_DATE_EPOCH_DAY + ")");
+        db.execSQL("CREATE INDEX " + INDEX_SCHEDULE_DAY + " ON " + TABLE_SCHEDULE
+                + "(" + KEY_DATE_EPOCH_DAY + ")");
+        db.execSQL("CREATE INDEX " + INDEX_SCHEDULE_TEACHER + " ON " + TABLE_SCHEDULE
+                + "(" + KEY_TEACHER + ")");
+        db.execSQL("CREATE INDEX " + INDEX_SCHEDULE_UNSYNCED + " ON " + TABLE_SCHEDULE
+                + "(" + KEY_ID + ") WHERE " + KEY_IS_SYNCED + " = 0");
+        createScheduleFtsTriggers(db);
+        // Dropping the old table bypassed the delete trigger for the orphans left behind
+        db.execSQL("DELETE FROM " + TABLE_SCHEDULE_FTS + " WHERE docid NOT IN (SELECT " + KEY_ID
+                + " FROM " + TABLE_SCHEDULE + ")");
+
+        rebuildTable(db, TABLE_BOOKING, KEY_ID + " INTEGER PRIMARY KEY AUTOINCREMENT,"
+                + KEY_CUSTOMER_ID + " INTEGER NOT NULL,"
+                + KEY_SCHEDULE_ID + " INTEGER NOT NULL,"
+                + KEY_STATUS + " TEXT NOT NULL DEFAULT '" + Booking.STATUS_BOOKED + "',"
+                + KEY_CREATED_AT + " INTEGER,"
+                + KEY_LAST_MODIFIED + " INTEGER,"
+                + "FOREIGN KEY(" + KEY_CUSTOMER_ID + ") REFERENCES " + TABLE_CUSTOMER + "(" + KEY_ID + ")"
+                + " ON DELETE CASCADE,"
+                + "FOREIGN KEY(" + KEY_SCHEDULE_ID + ") REFERENCES " + TABLE_SCHEDULE + "(" + KEY_ID + ")"
+                + " ON DELETE CASCADE",
+                KEY_CUSTOMER_ID + " IN (SELECT " + KEY_ID + " FROM " + TABLE_CUSTOMER + ") AND "
+                        + KEY_SCHEDULE_ID + " IN (SELECT " + KEY_ID + " FROM " + TABLE_SCHEDULE + ")");
+        db.execSQL("CREATE UNIQUE INDEX " + INDEX_BOOKING_CUSTOMER_SCHEDULE + " ON " + TABLE_BOOKING
+                + "(" + KEY_CUSTOMER_ID + ", " + KEY_SCHEDULE_ID + ")");
+        db.execSQL("CREATE INDEX " + INDEX_BOOKING_SCHEDULE_STATUS + " ON " + TABLE_BOOKING
+                + "(" + KEY_SCHEDULE_ID + ", " + KEY_STATUS + ")");
+    }
+
+    // Recreates the table with new column definitions, keeping the rows that match keepWhere and
+    // the AUTOINCREMENT counter, so ids of deleted rows are still never reused. Indexes and
+    // triggers go with the old table and must be recreated by the caller.
+    private static void rebuildTable(SQLiteDatabase db, String table, String columnDefinitions, String keepWhere) {
+        String rebuilt = table + "_rebuild";
+        StringBuilder columns = new StringBuilder();
+        try (Cursor cursor = db.rawQuery("PRAGMA table_info(" + table + ")", null)) {
+            int nameIndex = cursor.getColumnIndexOrThrow("name");
+            while (cursor.moveToNext()) {
+                if (columns.length() > 0) {
+                    columns.append(", ");
+                }
+                columns.append(cursor.getString(nameIndex));
+            }
+        }
+
+        db.execSQL("CREATE TABLE " + rebuilt + "(" + columnDefinitions + ")");
+        db.execSQL("INSERT INTO " + rebuilt + "(" + columns + ") SELECT " + columns + " FROM " + table
+                + " WHERE " + keepWhere);
+        db.execSQL("DELETE FROM sqlite_sequence WHERE name = '" + rebuilt + "'");
+        db.execSQL("INSERT INTO sqlite_sequence(name, seq) SELECT '" + rebuilt + "', seq FROM sqlite_sequence"
+                + " WHERE name = '" + table + "'");
+        db.execSQL("DROP TABLE " + table);
+        db.execSQL("ALTER TABLE " + rebuilt + " RENAME TO " + table);
+    }
+
+    // Columns whose changes are pushed to the cloud; the epoch-day columns are derived from date
+    private static final String[] COURSE_SYNCED_COLUMNS = {KEY_DAY_OF_WEEK, KEY_TIME, KEY_PRICE, KEY_CAPACITY,
+            KEY_DURATION, KEY_TYPE, KEY_DESCRIPTION, KEY_IS_ACTIVE, KEY_DIFFICULTY, KEY_EQUIPMENT};
+    private static final String[] SCHEDULE_SYNCED_COLUMNS = {KEY_DATE, KEY_TEACHER, KEY_COMMENTS,
+            KEY_YOGA_COURSE_ID, KEY_CURRENT_ENROLLMENT, KEY_IS_CANCELLED};
+
+    // Version 7: an append-only outbox of local changes, written by triggers so no write path can
+    // forget it. Rows arriving from the cloud are stored with is_synced = 1 and are not logged.
+    // Existing unsynced rows are seeded as inserts, and the partial is_synced indexes that served
+    // the old table scans are dropped.
+    private void migrateToVersion7(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + TABLE_SYNC_OUTBOX + "("
+                + KEY_SEQ + " INTEGER PRIMARY KEY AUTOINCREMENT,"
+                + KEY_ENTITY + " TEXT NOT NULL,"
+                + KEY_ENTITY_ID + " INTEGER NOT NULL,"
+                + KEY_OPERATION + " TEXT NOT NULL,"
+                + KEY_CHANGED_FIELDS + " TEXT,"
+                + KEY_CREATED_AT + " INTEGER NOT NULL"
+                + ")");
+        createOutboxTriggers(db, TABLE_YOGA_COURSE, COURSE_SYNCED_COLUMNS);
+        createOutboxTriggers(db, TABLE_SCHEDULE, SCHEDULE_SYNCED_COLUMNS);
+
+        for (String table : new String[]{TABLE_YOGA_COURSE, TABLE_SCHEDULE}) {
+            db.execSQL("INSERT INTO " + TABLE_SYNC_OUTBOX + "(" + KEY_ENTITY + ", " + KEY_ENTITY_ID + ", "
+                    + KEY_OPERATION + ", " + KEY_CREATED_AT + ") SELECT '" + table + "', " + KEY_ID + ", '"
+                    + OutboxEntry.OP_INSERT + "', " + SQL_NOW_MILLIS + " FROM " + table
+                    + " WHERE " + KEY_IS_SYNCED + " = 0 ORDER BY " + KEY_ID);
+        }
+        db.execSQL("DROP INDEX IF EXISTS " + INDEX_SCHEDULE_UNSYNCED);
+        db.execSQL("DROP INDEX IF EXISTS " + INDEX_YOGA_COURSE_UNSYNCED);
+    }
+
+    // Version 8: per-table high-water mark of the cloud lastModified values already pulled
+    private void migrateToVersion8(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + TABLE_SYNC_STATE + "("
+                + KEY_TABLE_NAME + " TEXT PRIMARY KEY,"
+                + KEY_WATERMARK + " INTEGER NOT NULL"
+                + ")");
+    }
+
+    // Version 9: one FTS4 document per schedule holding its teacher and comments plus its course's
+    // type and description, replacing the two per-table indexes, so every word of a query can be
+    // matched in a different field ("sam flow"). unicode61 folds case and diacritics for every
+    // script, on both sides of a MATCH; simple only folded ASCII.
+    private void migrateToVersion9(SQLiteDatabase db) {
+        for (String trigger : new String[]{"schedule_fts_insert", "schedule_fts_update", "schedule_fts_delete",
+                "yoga_course_fts_insert", "yoga_course_fts_update", "yoga_course_fts_delete"}) {
+            db.execSQL("DROP TRIGGER IF EXISTS " + trigger);
+        }
+        db.execSQL("DROP TABLE IF EXISTS " + TABLE_SCHEDULE_FTS);
+        db.execSQL("DROP TABLE IF EXISTS " + TABLE_YOGA_COURSE_FTS);
+
+        db.execSQL("CREATE VIRTUAL TABLE " + TABLE_SCHEDULE_SEARCH + " USING fts4("
+                + KEY_TEACHER + ", " + KEY_COMMENTS + ", " + KEY_TYPE + ", " + KEY_DESCRIPTION
+                + ", tokenize=unicode61, prefix=\"2,3\")");
+        createScheduleSearchTriggers(db);
+        db.execSQL("INSERT INTO " + TABLE_SCHEDULE_SEARCH + "(docid, " + KEY_TEACHER + ", " + KEY_COMMENTS + ", "
+                + KEY_TYPE + ", " + KEY_DESCRIPTION + ") SELECT s." + KEY_ID + ", s." + KEY_TEACHER + ", s."
+                + KEY_COMMENTS + ", c." + KEY_TYPE + ", c." + KEY_DESCRIPTION + " FROM " + TABLE_SCHEDULE
+                + " s JOIN " + TABLE_YOGA_COURSE + " c ON c." + KEY_ID + " = s." + KEY_YOGA_COURSE_ID);
+    }
+
+    // A course's type and description are copied into each of its schedules' documents. Cascaded
+    // schedule deletes fire the schedule trigger, so course deletes need none of their own.
+    private static void createScheduleSearchTriggers(SQLiteDatabase db) {
+        String courseType = "(SELECT " + KEY_TYPE + " FROM " + TABLE_YOGA_COURSE + " WHERE " + KEY_ID
+                + " = new." + KEY_YOGA_COURSE_ID + ")";
+        String courseDescription = "(SELECT " + KEY_DESCRIPTION + " FROM " + TABLE_YOGA_COURSE + " WHERE "
+                + KEY_ID + " = new." + KEY_YOGA_COURSE_ID + ")";
+        db.execSQL("CREATE TRIGGER schedule_search_insert AFTER INSERT ON " + TABLE_SCHEDULE + " BEGIN "
+                + "INSERT INTO " + TABLE_SCHEDULE_SEARCH + "(docid, " + KEY_TEACHER + ", " + KEY_COMMENTS + ", "
+                + KEY_TYPE + ", " + KEY_DESCRIPTION + ") VALUES (new." + KEY_ID + ", new." + KEY_TEACHER
+                + ", new." + KEY_COMMENTS + ", " + courseType + ", " + courseDescription + "); END");
+        db.execSQL("CREATE TRIGGER schedule_search_update AFTER UPDATE OF " + KEY_TEACHER + ", " + KEY_COMMENTS
+                + ", " + KEY_YOGA_COURSE_ID + " ON " + TABLE_SCHEDULE + " BEGIN "
+                + "UPDATE " + TABLE_SCHEDULE_SEARCH + " SET " + KEY_TEACHER + " = new." + KEY_TEACHER + ", "
+                + KEY_COMMENTS + " = new." + KEY_COMMENTS + ", " + KEY_TYPE + " = " + courseType + ", "
+                + KEY_DESCRIPTION + " = " + courseDescription + " WHERE docid = old." + KEY_ID + "; END");
+        db.execSQL("CREATE TRIGGER schedule_search_delete AFTER DELETE ON " + TABLE_SCHEDULE + " BEGIN "
+                + "DELETE FROM " + TABLE_SCHEDULE_SEARCH + " WHERE docid = old." + KEY_ID + "; END");
+        db.execSQL("CREATE TRIGGER yoga_course_search_update AFTER UPDATE OF " + KEY_TYPE + ", " + KEY_DESCRIPTION
+                + " ON " + TABLE_YOGA_COURSE + " BEGIN "
+                + "UPDATE " + TABLE_SCHEDULE_SEARCH + " SET " + KEY_TYPE + " = new." + KEY_TYPE + ", "
+                + KEY_DESCRIPTION + " = new." + KEY_DESCRIPTION + " WHERE docid IN (SELECT " + KEY_ID + " FROM "
+                + TABLE_SCHEDULE + " WHERE " + KEY_YOGA_COURSE_ID + " = new." + KEY_ID + "); END");
+    }
+
+    // Version 10: an edit that changes no synced column used to leave is_synced at 0 with nothing
+    // in the outbox to acknowledge, so the row looked pending forever. Such an update is now
+    // undone as far as sync is concerned, and rows already stuck that way are marked synced.
+    private void migrateToVersion10(SQLiteDatabase db) {
+        createUnchangedUpdateTrigger(db, TABLE_YOGA_COURSE, COURSE_SYNCED_COLUMNS);
+        createUnchangedUpdateTrigger(db, TABLE_SCHEDULE, SCHEDULE_SYNCED_COLUMNS);
+        for (String table : new String[]{TABLE_YOGA_COURSE, TABLE_SCHEDULE}) {
+            db.execSQL("UPDATE " + table + " SET " + KEY_IS_SYNCED + " = 1 WHERE " + KEY_IS_SYNCED + " = 0 AND "
+                    + KEY_ID + " NOT IN (SELECT " + KEY_ENTITY_ID + " FROM " + TABLE_SYNC_OUTBOX + " WHERE "
+                    + KEY_ENTITY + " = '" + table + "')");
+        }
+        // Serves the per-row pending lookups made while merging a pull
+        db.execSQL("CREATE INDEX " + INDEX_SYNC_OUTBOX_ENTITY + " ON " + TABLE_SYNC_OUTBOX + "("
+                + KEY_ENTITY + ", " + KEY_ENTITY_ID + ")");
+    }
+
+    // A synced row rewritten without changing a synced column keeps its flag and lastModified,
+    // so it neither waits on an outbox entry that was never written nor outdates the cloud copy
+    private static void createUnchangedUpdateTrigger(SQLiteDatabase db, String table, String[] columns) {
+        StringBuilder anyChanged = new StringBuilder();
+        for (String column : columns) {
+            if (anyChanged.length() > 0) {
+                anyChanged.append(" OR ");
+            }
+            anyChanged.append("old.").append(column).append(" IS NOT new.").append(column);
+        }
+        db.execSQL("CREATE TRIGGER " + table + "_unchanged_update AFTER UPDATE ON " + table
+                + " WHEN old." + KEY_IS_SYNCED + " = 1 AND new." + KEY_IS_SYNCED + " = 0 AND NOT (" + anyChanged
+                + ") BEGIN UPDATE " + table + " SET " + KEY_IS_SYNCED + " = 1, " + KEY_LAST_MODIFIED + " = old."
+                + KEY_LAST_MODIFIED + " WHERE " + KEY_ID + " = new." + KEY_ID + "; END");
+    }
+
+    // Version 11: pulls are ranged on the server-stamped serverModified instead of the writer's
+    // lastModified, so the old watermarks mean nothing and the next pull starts from scratch
+    private void migrateToVersion11(SQLiteDatabase db) {
+        db.execSQL("DELETE FROM " + TABLE_SYNC_STATE);
+    }
+
+    // Version 12: version 3 used to derive epoch days with julianday(), which rolls dates such as
+    // 31/02/2025 over into March instead of rejecting them. They are derived again here with the
+    // same parser every write path uses.
+    private void migrateToVersion12(SQLiteDatabase db) {
+        backfillScheduleDays(db);
+    }
+
+    // Sets epoch day and weekday from the dd/MM/yyyy text, or NULLs them when it is not a real
+    // date, as putScheduleDate does. Only rows whose stored values differ are rewritten; neither
+    // column is synced, so no outbox entries are logged.
+    private static void backfillScheduleDays(SQLiteDatabase db) {
+        try (Cursor cursor = db.rawQuery("SELECT " + KEY_ID + ", " + KEY_DATE + ", " + KEY_DATE_EPOCH_DAY + ", "
+                + KEY_WEEKDAY + " FROM " + TABLE_SCHEDULE, null);
+             SQLiteStatement update = db.compileStatement("UPDATE " + TABLE_SCHEDULE + " SET "
+                     + KEY_DATE_EPOCH_DAY + " = ?, " + KEY_WEEKDAY + " = ? WHERE " + KEY_ID + " = ?")) {
+            while (cursor.moveToNext()) {
+                long epochDay = DateUtils.parseEpochDay(cursor.getString(1));
+                if (epochDay == DateUtils.NO_DATE) {
+                    if (cursor.isNull(2) && cursor.isNull(3)) {
+                        continue;
+                    }
+                    update.bindNull(1);
+                    update.bindNull(2);
+                } else {
+                    int weekday = DateUtils.dayOfWeek(epochDay);
+                    if (!cursor.isNull(2) && cursor.getLong(2) == epochDay
+                            && !cursor.isNull(3) && cursor.getInt(3) == weekday) {
+                        continue;
+                    }
+                    update.bindLong(1, epochDay);
+                    update.bindLong(2, weekday);
+                }
+                update.bindLong(3, cursor.getLong(0));
+                update.executeUpdateDelete();
+            }
+        }
+    }
+
+    private static final String SQL_NOW_MILLIS = "CAST((julianday('now') - 2440587.5) * 86400000 AS INTEGER)";
+
+    // Updates are logged only when a synced column actually changed, with the names of those
+    // columns; marking a row synced, or rewriting it unchanged, adds nothing.
+    private static void createOutboxTriggers(SQLiteDatabase db, String table, String[] columns) {
+        String insertEntry = "INSERT INTO " + TABLE_SYNC_OUTBOX + "(" + KEY_ENTITY + ", " + KEY_ENTITY_ID + ", "
+                + KEY_OPERATION + ", " + KEY_CHANGED_FIELDS + ", " + KEY_CREATED_AT + ") VALUES ('" + table + "', ";
+        StringBuilder anyChanged = new StringBuilder();
+        StringBuilder changedList = new StringBuilder();
+        for (String column : columns) {
+            String differs = "old." + column + " IS NOT new." + column;
+            if (anyChanged.length() > 0) {
+                anyChanged.append(" OR ");
+                changedList.append(" || ");
+            }
+            anyChanged.append(differs);
+            changedList.append("CASE WHEN ").append(differs).append(" THEN '").append(column).append(",' ELSE '' END");
+        }
+
+        db.execSQL("CREATE TRIGGER " + table + "_outbox_insert AFTER INSERT ON " + table
+                + " WHEN new." + KEY_IS_SYNCED + " = 0 BEGIN " + insertEntry + "new." + KEY_ID + ", '"
+                + OutboxEntry.OP_INSERT + "', NULL, " + SQL_NOW_MILLIS + "); END");
+        db.execSQL("CREATE TRIGGER " + table + "_outbox_update AFTER UPDATE ON " + table
+                + " WHEN new." + KEY_IS_SYNCED + " = 0 AND (" + anyChanged + ") BEGIN " + insertEntry
+                + "new." + KEY_ID + ", '" + OutboxEntry.OP_UPDATE + "', rtrim(" + changedList + ", ','), "
+                + SQL_NOW_MILLIS + "); END");
+        db.execSQL("CREATE TRIGGER " + table + "_outbox_delete AFTER DELETE ON " + table + " BEGIN "
+                + insertEntry + "old." + KEY_ID + ", '" + OutboxEntry.OP_DELETE + "', NULL, "
+                + SQL_NOW_MILLIS + "); END");
+    }
+
+    private static void createScheduleFtsTriggers(SQLiteDatabase db) {
+        db.execSQL("CREATE TRIGGER schedule_fts_insert AFTER INSERT ON " + TABLE_SCHEDULE + " BEGIN "
+                + "INSERT INTO " + TABLE_SCHEDULE_FTS + "(docid, " + KEY_TEACHER + ", " + KEY_COMMENTS + ") "
+                + "VALUES (new." + KEY_ID + ", new." + KEY_TEACHER + ", new." + KEY_COMMENTS + "); END");
+        db.execSQL("CREATE TRIGGER schedule_fts_update AFTER UPDATE OF " + KEY_TEACHER + ", " + KEY_COMMENTS
+                + " ON " + TABLE_SCHEDULE + " BEGIN "
+                + "UPDATE " + TABLE_SCHEDULE_FTS + " SET " + KEY_TEACHER + " = new." + KEY_TEACHER + ", "
+                + KEY_COMMENTS + " = new." + KEY_COMMENTS + " WHERE docid = old." + KEY_ID + "; END");
+        db.execSQL("CREATE TRIGGER schedule_fts_delete AFTER DELETE ON " + TABLE_SCHEDULE + " BEGIN "
+                + "DELETE FROM " + TABLE_SCHEDULE_FTS + " WHERE docid = old." + KEY_ID + "; END");
     }
 
     // YogaCourse CRUD operations
@@ -122,71 +661,111 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         values.put(KEY_IS_SYNCED, course.isSynced() ? 1 : 0);
 
         long id = db.insert(TABLE_YOGA_COURSE, null, values);
-        db.close();
+        if (id != -1) {
+            YogaCourse inserted = new YogaCourse(course);
+            inserted.setId((int) id);
+            courseCache.put(inserted);
+            changeNotifier.publish(TABLE_YOGA_COURSE, (int) id);
+        }
         return id;
     }
 
     public List<YogaCourse> getAllYogaCourses() {
-        List<YogaCourse> courseList = new ArrayList<>();
         String selectQuery = "SELECT * FROM " + TABLE_YOGA_COURSE;
 
         SQLiteDatabase db = this.getReadableDatabase();
-        Cursor cursor = db.rawQuery(selectQuery, null);
-
-        if (cursor.moveToFirst()) {
-            do {
-                YogaCourse course = new YogaCourse();
-                course.setId(cursor.getInt(cursor.getColumnIndexOrThrow(KEY_ID)));
-                course.setDayOfWeek(cursor.getString(cursor.getColumnIndexOrThrow(KEY_DAY_OF_WEEK)));
-                course.setTime(cursor.getString(cursor.getColumnIndexOrThrow(KEY_TIME)));
-                course.setPrice(cursor.getFloat(cursor.getColumnIndexOrThrow(KEY_PRICE)));
-                course.setCapacity(cursor.getInt(cursor.getColumnIndexOrThrow(KEY_CAPACITY)));
-                course.setDuration(cursor.getInt(cursor.getColumnIndexOrThrow(KEY_DURATION)));
-                course.setType(cursor.getString(cursor.getColumnIndexOrThrow(KEY_TYPE)));
-                course.setDescription(cursor.getString(cursor.getColumnIndexOrThrow(KEY_DESCRIPTION)));
-                course.setActive(cursor.getInt(cursor.getColumnIndexOrThrow(KEY_IS_ACTIVE)) == 1);
-                course.setDifficulty(cursor.getString(cursor.getColumnIndexOrThrow(KEY_DIFFICULTY)));
-                course.setEquipment(cursor.getString(cursor.getColumnIndexOrThrow(KEY_EQUIPMENT)));
-                course.setLastModified(cursor.getLong(cursor.getColumnIndexOrThrow(KEY_LAST_MODIFIED)));
-                course.setSynced(cursor.getInt(cursor.getColumnIndexOrThrow(KEY_IS_SYNCED)) == 1);
-
-                courseList.add(course);
-            } while (cursor.moveToNext());
-        }
-
-        cursor.close();
-        db.close();
-        return courseList;
+        try (Cursor cursor = db.rawQuery(selectQuery, null)) {
+            return CourseRowMapper.mapAll(cursor);
+        }
+    }
+
+    // Keyset page of courses in id order; pass 0 for the first page and the last id seen after that
+    public List<YogaCourse> getYogaCoursesPage(int afterId, int limit) {
+        SQLiteDatabase db = this.getReadableDatabase();
+        try (Cursor cursor = db.query(TABLE_YOGA_COURSE, null, KEY_ID + " > ?",
+                new String[]{String.valueOf(afterId)}, null, null, KEY_ID + " ASC",
+                String.valueOf(limit))) {
+            return CourseRowMapper.mapAll(cursor);
+        }
     }
 
     public YogaCourse getYogaCourse(int id) {
+        YogaCourse cached = courseCache.get(id);
+        if (cached != null) {
+            return cached;
+        }
+
+        long cacheVersion = courseCache.version();
+        SQLiteDatabase db = this.getReadableDatabase();
+        try (Cursor cursor = db.query(TABLE_YOGA_COURSE, null, KEY_ID + "=?",
+                new String[]{String.valueOf(id)}, null, null, null)) {
+            if (cursor.moveToFirst()) {
+                YogaCourse course = new CourseRowMapper(cursor).map(cursor);
+                courseCache.putIfUnchanged(course, cacheVersion);
+                return course;
+            }
+            return null;
+        }
+    }
+
+    // Rows for the given ids in no particular order; ids with no row are simply absent
+    public List<YogaCourse> getYogaCoursesByIds(Collection<Integer> ids) {
+        SQLiteDatabase db = this.getReadableDatabase();
+        try (Cursor cursor = db.query(TABLE_YOGA_COURSE, null, KEY_ID + " IN (" + joinIds(ids) + ")",
+                null, null, null, null)) {
+            return CourseRowMapper.mapAll(cursor);
+        }
+    }
+
+    // One pass over yoga_course joined to its schedules through idx_schedule_course_day; the
+    // WHERE clause and trailing ORDER BY/LIMIT are appended by the callers. The first bind
+    // argument is today's epoch day, for the next-session column.
+    private static final String COURSE_SUMMARY_QUERY = "SELECT c.*, COUNT(s." + KEY_ID + ") AS schedule_count,"
+            + " MIN(CASE WHEN s." + KEY_IS_CANCELLED + " = 0 AND s." + KEY_DATE_EPOCH_DAY + " >= ?"
+            + " THEN s." + KEY_DATE_EPOCH_DAY + " END) AS next_epoch_day,"
+            + " COALESCE(SUM(s." + KEY_IS_CANCELLED + "), 0) AS cancelled_count,"
+            + " AVG(CASE WHEN c." + KEY_CAPACITY + " > 0 THEN CAST(s." + KEY_CURRENT_ENROLLMENT + " AS REAL) / c."
+            + KEY_CAPACITY + " END) AS fill_rate"
+            + " FROM " + TABLE_YOGA_COURSE + " c LEFT JOIN " + TABLE_SCHEDULE + " s ON s."
+            + KEY_YOGA_COURSE_ID + " = c." + KEY_ID;
+
+    // Keyset page of course summaries in id order, like getYogaCoursesPage
+    public List<CourseSummary> getCourseSummariesPage(int afterId, int limit) {
+        SQLiteDatabase db = this.getReadableDatabase();
+        try (Cursor cursor = db.rawQuery(COURSE_SUMMARY_QUERY + " WHERE c." + KEY_ID + " > ?"
+                        + " GROUP BY c." + KEY_ID + " ORDER BY c." + KEY_ID + " ASC LIMIT " + limit,
+                new String[]{String.valueOf(DateUtils.today()), String.valueOf(afterId)})) {
+            return mapCourseSummaries(cursor);
+        }
+    }
+
+    public List<CourseSummary> getCourseSummariesByIds(Collection<Integer> ids) {
         SQLiteDatabase db = this.getReadableDatabase();
-        Cursor cursor = db.query(TABLE_YOGA_COURSE, null, KEY_ID + "=?",
-                new String[]{String.valueOf(id)}, null, null, null);
-
-        if (cursor != null && cursor.moveToFirst()) {
-            YogaCourse course = new YogaCourse();
-            course.setId(cursor.getInt(cursor.getColumnIndexOrThrow(KEY_ID)));
-            course.setDayOfWeek(cursor.getString(cursor.getColumnIndexOrThrow(KEY_DAY_OF_WEEK)));
-            course.setTime(cursor.getString(cursor.getColumnIndexOrThrow(KEY_TIME)));
-            course.setPrice(cursor.getFloat(cursor.getColumnIndexOrThrow(KEY_PRICE)));
-            course.setCapacity(cursor.getInt(cursor.getColumnIndexOrThrow(KEY_CAPACITY)));
-            course.setDuration(cursor.getInt(cursor.getColumnIndexOrThrow(KEY_DURATION)));
-            course.setType(cursor.getString(cursor.getColumnIndexOrThrow(KEY_TYPE)));
-            course.setDescription(cursor.getString(cursor.getColumnIndexOrThrow(KEY_DESCRIPTION)));
-            course.setActive(cursor.getInt(cursor.getColumnIndexOrThrow(KEY_IS_ACTIVE)) == 1);
-            course.setDifficulty(cursor.getString(cursor.getColumnIndexOrThrow(KEY_DIFFICULTY)));
-            course.setEquipment(cursor.getString(cursor.getColumnIndexOrThrow(KEY_EQUIPMENT)));
-            course.setLastModified(cursor.getLong(cursor.getColumnIndexOrThrow(KEY_LAST_MODIFIED)));
-            course.setSynced(cursor.getInt(cursor.getColumnIndexOrThrow(KEY_IS_SYNCED)) == 1);
-
-            cursor.close();
-            return course;
-        }
-        if (cursor != null) {
-            cursor.close();
-        }
-        return null;
+        try (Cursor cursor = db.rawQuery(COURSE_SUMMARY_QUERY + " WHERE c." + KEY_ID + " IN (" + joinIds(ids) + ")"
+                        + " GROUP BY c." + KEY_ID,
+                new String[]{String.valueOf(DateUtils.today())})) {
+            return mapCourseSummaries(cursor);
+        }
+    }
+
+    private static List<CourseSummary> mapCourseSummaries(Cursor cursor) {
+        List<CourseSummary> summaries = new ArrayList<>(cursor.getCount());
+        if (!cursor.moveToFirst()) {
+            return summaries;
+        }
+        CourseRowMapper courseMapper = new CourseRowMapper(cursor);
+        int countIndex = cursor.getColumnIndexOrThrow("schedule_count");
+        int nextIndex = cursor.getColumnIndexOrThrow("next_epoch_day");
+        int cancelledIndex = cursor.getColumnIndexOrThrow("cancelled_count");
+        int fillIndex = cursor.getColumnIndexOrThrow("fill_rate");
+        do {
+            summaries.add(new CourseSummary(courseMapper.map(cursor),
+                    cursor.getInt(countIndex),
+                    cursor.isNull(nextIndex) ? DateUtils.NO_DATE : cursor.getLong(nextIndex),
+                    cursor.getInt(cancelledIndex),
+                    cursor.isNull(fillIndex) ? Double.NaN : cursor.getDouble(fillIndex)));
+        } while (cursor.moveToNext());
+        return summaries;
     }
 
     public int updateYogaCourse(YogaCourse course) {
@@ -206,17 +785,45 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         values.put(KEY_LAST_MODIFIED, course.getLastModified());
         values.put(KEY_IS_SYNCED, course.isSynced() ? 1 : 0);
 
-        return db.update(TABLE_YOGA_COURSE, values, KEY_ID + " = ?",
+        int rows = db.update(TABLE_YOGA_COURSE, values, KEY_ID + " = ?",
                 new String[]{String.valueOf(course.getId())});
+        // Re-read on demand: an edit that changed no synced column keeps the stored is_synced
+        // and lastModified rather than the copy's
+        courseCache.remove(course.getId());
+        if (rows > 0) {
+            changeNotifier.publish(TABLE_YOGA_COURSE, course.getId());
+        }
+        return rows;
     }
 
+    // One transaction: the course row's delete cascades to its schedules and their bookings,
+    // and the FTS triggers follow. Runs on the repository's writer thread, however many
+    // sessions the course has.
     public void deleteYogaCourse(int courseId) {
         SQLiteDatabase db = this.getWritableDatabase();
-        db.delete(TABLE_SCHEDULE, KEY_YOGA_COURSE_ID + " = ?",
-                new String[]{String.valueOf(courseId)});
-        db.delete(TABLE_YOGA_COURSE, KEY_ID + " = ?",
-                new String[]{String.valueOf(courseId)});
-        db.close();
+        // Collected first so observers hear about the schedules removed along with the course
+        List<Integer> scheduleIds = new ArrayList<>();
+        db.beginTransactionNonExclusive();
+        try {
+            try (Cursor cursor = db.query(TABLE_SCHEDULE, new String[]{KEY_ID}, KEY_YOGA_COURSE_ID + " = ?",
+                    new String[]{String.valueOf(courseId)}, null, null, null)) {
+                while (cursor.moveToNext()) {
+                    scheduleIds.add(cursor.getInt(0));
+                }
+            }
+            db.delete(TABLE_YOGA_COURSE, KEY_ID + " = ?",
+                    new String[]{String.valueOf(courseId)});
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        if (!scheduleIds.isEmpty()) {
+            // Any build that overlapped the delete finishes before this can take the index lock
+            teacherIndex.invalidate();
+        }
+        courseCache.remove(courseId);
+        changeNotifier.publish(TABLE_SCHEDULE, scheduleIds);
+        changeNotifier.publish(TABLE_YOGA_COURSE, courseId);
     }
 
     // Schedule CRUD operations
@@ -224,7 +831,7 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         SQLiteDatabase db = this.getWritableDatabase();
         ContentValues values = new ContentValues();
 
-        values.put(KEY_DATE, schedule.getDate());
+        putScheduleDate(values, schedule);
         values.put(KEY_TEACHER, schedule.getTeacher());
         values.put(KEY_COMMENTS, schedule.getComments());
         values.put(KEY_YOGA_COURSE_ID, schedule.getYogaCourseId());
@@ -233,150 +840,1002 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         values.put(KEY_LAST_MODIFIED, schedule.getLastModified());
         values.put(KEY_IS_SYNCED, schedule.isSynced() ? 1 : 0);
 
-        long id = db.insert(TABLE_SCHEDULE, null, values);
-        db.close();
+        long id;
+        synchronized (teacherIndex) {
+            id = db.insert(TABLE_SCHEDULE, null, values);
+            if (id != -1) {
+                teacherIndex.add(schedule.getTeacher());
+            }
+        }
+        if (id != -1) {
+            changeNotifier.publish(TABLE_SCHEDULE, (int) id);
+        }
         return id;
     }
 
     public List<Schedule> getSchedulesForCourse(int courseId) {
-        List<Schedule> schedules = new ArrayList<>();
         SQLiteDatabase db = this.getReadableDatabase();
-        
-        Cursor cursor = db.query(TABLE_SCHEDULE, null,
+
+        try (Cursor cursor = db.query(TABLE_SCHEDULE, null,
                 KEY_YOGA_COURSE_ID + "=?", new String[]{String.valueOf(courseId)},
-                null, null, KEY_DATE + " ASC");
-
-        if (cursor.moveToFirst()) {
-            do {
-                Schedule schedule = new Schedule();
-                schedule.setId(cursor.getInt(cursor.getColumnIndexOrThrow(KEY_ID)));
-                schedule.setDate(cursor.getString(cursor.getColumnIndexOrThrow(KEY_DATE)));
-                schedule.setTeacher(cursor.getString(cursor.getColumnIndexOrThrow(KEY_TEACHER)));
-                schedule.setComments(cursor.getString(cursor.getColumnIndexOrThrow(KEY_COMMENTS)));
-                schedule.setYogaCourseId(cursor.getInt(cursor.getColumnIndexOrThrow(KEY_YOGA_COURSE_ID)));
-                schedule.setCurrentEnrollment(cursor.getInt(cursor.getColumnIndexOrThrow(KEY_CURRENT_ENROLLMENT)));
-                schedule.setCancelled(cursor.getInt(cursor.getColumnIndexOrThrow(KEY_IS_CANCELLED)) == 1);
-                schedule.setLastModified(cursor.getLong(cursor.getColumnIndexOrThrow(KEY_LAST_MODIFIED)));
-                schedule.setSynced(cursor.getInt(cursor.getColumnIndexOrThrow(KEY_IS_SYNCED)) == 1);
-                
-                schedules.add(schedule);
-            } while (cursor.moveToNext());
-        }
-        cursor.close();
-        db.close();
-        return schedules;
-    }
-
-    public List<Schedule> searchSchedulesByTeacher(String teacherName) {
-        List<Schedule> schedules = new ArrayList<>();
+                null, null, KEY_DATE_EPOCH_DAY + " ASC, " + KEY_ID + " ASC")) {
+            return ScheduleRowMapper.mapAll(cursor);
+        }
+    }
+
+    // Keyset page of a course's schedules in (date, id) order; pass null for the first page and
+    // the last schedule seen after that
+    public List<Schedule> getSchedulesForCoursePage(int courseId, Schedule after, int limit) {
         SQLiteDatabase db = this.getReadableDatabase();
-        
-        String query = "SELECT * FROM " + TABLE_SCHEDULE + 
-                      " WHERE " + KEY_TEACHER + " LIKE ?";
-        Cursor cursor = db.rawQuery(query, new String[]{"%" + teacherName + "%"});
-
-        if (cursor.moveToFirst()) {
-            do {
-                Schedule schedule = new Schedule();
-                schedule.setId(cursor.getInt(cursor.getColumnIndexOrThrow(KEY_ID)));
-                schedule.setDate(cursor.getString(cursor.getColumnIndexOrThrow(KEY_DATE)));
-                schedule.setTeacher(cursor.getString(cursor.getColumnIndexOrThrow(KEY_TEACHER)));
-                schedule.setComments(cursor.getString(cursor.getColumnIndexOrThrow(KEY_COMMENTS)));
-                schedule.setYogaCourseId(cursor.getInt(cursor.getColumnIndexOrThrow(KEY_YOGA_COURSE_ID)));
-                schedule.setCurrentEnrollment(cursor.getInt(cursor.getColumnIndexOrThrow(KEY_CURRENT_ENROLLMENT)));
-                schedule.setCancelled(cursor.getInt(cursor.getColumnIndexOrThrow(KEY_IS_CANCELLED)) == 1);
-                schedule.setLastModified(cursor.getLong(cursor.getColumnIndexOrThrow(KEY_LAST_MODIFIED)));
-                schedule.setSynced(cursor.getInt(cursor.getColumnIndexOrThrow(KEY_IS_SYNCED)) == 1);
-                
-                schedules.add(schedule);
-            } while (cursor.moveToNext());
-        }
-        cursor.close();
-        db.close();
-        return schedules;
+        String selection = KEY_YOGA_COURSE_ID + " = ?";
+        String[] args;
+        if (after == null) {
+            args = new String[]{String.valueOf(courseId)};
+        } else {
+            selection += " AND " + DATE_KEYSET_PREDICATE;
+            String afterDay = String.valueOf(after.getEpochDay());
+            args = new String[]{String.valueOf(courseId), afterDay, afterDay, String.valueOf(after.getId())};
+        }
+
+        try (Cursor cursor = db.query(TABLE_SCHEDULE, null, selection, args, null, null,
+                KEY_DATE_EPOCH_DAY + " ASC, " + KEY_ID + " ASC", String.valueOf(limit))) {
+            return ScheduleRowMapper.mapAll(cursor);
+        }
+    }
+
+    public List<Schedule> getSchedulesByIds(Collection<Integer> ids) {
+        SQLiteDatabase db = this.getReadableDatabase();
+        try (Cursor cursor = db.query(TABLE_SCHEDULE, null, KEY_ID + " IN (" + joinIds(ids) + ")",
+                null, null, null, null)) {
+            return ScheduleRowMapper.mapAll(cursor);
+        }
+    }
+
+    // Integer ids are inlined rather than bound so large sets don't hit the bind-argument limit
+    private static String joinIds(Collection<Integer> ids) {
+        StringBuilder joined = new StringBuilder();
+        for (int id : ids) {
+            if (joined.length() > 0) {
+                joined.append(',');
+            }
+            joined.append(id);
+        }
+        return joined.toString();
+    }
+
+    public Schedule getSchedule(int id) {
+        SQLiteDatabase db = this.getReadableDatabase();
+        try (Cursor cursor = db.query(TABLE_SCHEDULE, null, KEY_ID + "=?",
+                new String[]{String.valueOf(id)}, null, null, null)) {
+            if (cursor.moveToFirst()) {
+                return new ScheduleRowMapper(cursor).map(cursor);
+            }
+            return null;
+        }
+    }
+
+    // Inclusive range of epoch days, served by the date index
+    public List<Schedule> getSchedulesBetween(long fromEpochDay, long toEpochDay) {
+        SQLiteDatabase db = this.getReadableDatabase();
+
+        try (Cursor cursor = db.query(TABLE_SCHEDULE, null,
+                KEY_DATE_EPOCH_DAY + " BETWEEN ? AND ?",
+                new String[]{String.valueOf(fromEpochDay), String.valueOf(toEpochDay)},
+                null, null, KEY_DATE_EPOCH_DAY + " ASC, " + KEY_ID + " ASC")) {
+            return ScheduleRowMapper.mapAll(cursor);
+        }
+    }
+
+    // Next classes from today onwards that have not been cancelled
+    public List<Schedule> getUpcomingSchedules(int limit) {
+        SQLiteDatabase db = this.getReadableDatabase();
+
+        try (Cursor cursor = db.query(TABLE_SCHEDULE, null,
+                KEY_DATE_EPOCH_DAY + " >= ? AND " + KEY_IS_CANCELLED + " = 0",
+                new String[]{String.valueOf(DateUtils.today())},
+                null, null, KEY_DATE_EPOCH_DAY + " ASC, " + KEY_ID + " ASC",
+                String.valueOf(limit))) {
+            return ScheduleRowMapper.mapAll(cursor);
+        }
+    }
+
+    // Column prefix for the course half of joined schedule/course rows
+    private static final String COURSE_PREFIX = "course_";
+    private static final String COURSE_COLUMNS_PREFIXED = prefixedColumns("c", COURSE_PREFIX,
+            KEY_ID, KEY_DAY_OF_WEEK, KEY_TIME, KEY_PRICE, KEY_CAPACITY, KEY_DURATION, KEY_TYPE,
+            KEY_DESCRIPTION, KEY_IS_ACTIVE, KEY_DIFFICULTY, KEY_EQUIPMENT, KEY_LAST_MODIFIED, KEY_IS_SYNCED);
+
+    // Schedules whose document holds every word of the query, in any mix of fields, each ranked by
+    // the first field that holds any of the words: 0 teacher, 1 comments, 2 course type, 3 course
+    // description. Binds the four column-scoped any-word expressions in that order, then the
+    // whole-row every-word expression.
+    private static final String SEARCH_HITS_QUERY = "SELECT schedule_id, MIN(search_rank) AS search_rank"
+            + " FROM (SELECT docid AS schedule_id, 0 AS search_rank FROM " + TABLE_SCHEDULE_SEARCH
+            + " WHERE " + TABLE_SCHEDULE_SEARCH + " MATCH ?"
+            + " UNION ALL SELECT docid, 1 FROM " + TABLE_SCHEDULE_SEARCH + " WHERE " + TABLE_SCHEDULE_SEARCH + " MATCH ?"
+            + " UNION ALL SELECT docid, 2 FROM " + TABLE_SCHEDULE_SEARCH + " WHERE " + TABLE_SCHEDULE_SEARCH + " MATCH ?"
+            + " UNION ALL SELECT docid, 3 FROM " + TABLE_SCHEDULE_SEARCH + " WHERE " + TABLE_SCHEDULE_SEARCH + " MATCH ?)"
+            + " WHERE schedule_id IN (SELECT docid FROM " + TABLE_SCHEDULE_SEARCH
+            + " WHERE " + TABLE_SCHEDULE_SEARCH + " MATCH ?)"
+            + " GROUP BY schedule_id";
+
+    // Answers every criterion of the query with a single schedule/course join. Free-text hits are
+    // ranked teacher first, then comments, course type and course description; results are
+    // ordered by date within each rank. Pages are keyed on (rank, date, id): pass null for the
+    // first page and the last result seen after that. An empty query returns no results.
+    public List<SearchResult> searchSchedules(ScheduleSearchQuery query, SearchResult after, int limit) {
+        return searchSchedules(query, after, limit, null);
+    }
+
+    // Cancelling the signal aborts the query mid-scan with an OperationCanceledException
+    public List<SearchResult> searchSchedules(ScheduleSearchQuery query, SearchResult after, int limit,
+                                              CancellationSignal cancellationSignal) {
+        List<SearchResult> results = new ArrayList<>();
+        if (query.isEmpty()) {
+            return results;
+        }
+
+        StringBuilder sql = new StringBuilder("SELECT s.*, ").append(COURSE_COLUMNS_PREFIXED);
+        List<String> args = new ArrayList<>();
+        StringBuilder where = new StringBuilder(" WHERE 1 = 1");
+
+        String textMatch = buildMatchExpression(null, query.getText());
+        String teacherMatch = buildMatchExpression(KEY_TEACHER, query.getTeacher());
+        if ((query.getText() != null && textMatch == null)
+                || (query.getTeacher() != null && teacherMatch == null)) {
+            // Text with no searchable words can't match anything
+            return results;
+        }
+        if (textMatch != null) {
+            sql.append(", hits.search_rank AS search_rank");
+        } else {
+            sql.append(", 0 AS search_rank");
+        }
+        sql.append(" FROM ").append(TABLE_SCHEDULE).append(" s JOIN ").append(TABLE_YOGA_COURSE)
+                .append(" c ON c.").append(KEY_ID).append(" = s.").append(KEY_YOGA_COURSE_ID);
+        if (textMatch != null) {
+            sql.append(" JOIN (").append(SEARCH_HITS_QUERY).append(") hits ON hits.schedule_id = s.").append(KEY_ID);
+            args.add(buildAnyMatchExpression(KEY_TEACHER, query.getText()));
+            args.add(buildAnyMatchExpression(KEY_COMMENTS, query.getText()));
+            args.add(buildAnyMatchExpression(KEY_TYPE, query.getText()));
+            args.add(buildAnyMatchExpression(KEY_DESCRIPTION, query.getText()));
+            args.add(textMatch);
+        }
+
+        if (teacherMatch != null) {
+            where.append(" AND s.").append(KEY_ID).append(" IN (SELECT docid FROM ").append(TABLE_SCHEDULE_SEARCH)
+                    .append(" WHERE ").append(TABLE_SCHEDULE_SEARCH).append(" MATCH ?)");
+            args.add(teacherMatch);
+        }
+        if (query.getDate() != DateUtils.NO_DATE) {
+            where.append(" AND s.").append(KEY_DATE_EPOCH_DAY).append(" = ?");
+            args.add(String.valueOf(query.getDate()));
+        }
+        if (query.getDayOfWeek() >= 0) {
+            where.append(" AND s.").append(KEY_WEEKDAY).append(" = ?");
+            args.add(String.valueOf(query.getDayOfWeek()));
+        }
+        if (query.getFromDate() != DateUtils.NO_DATE) {
+            where.append(" AND s.").append(KEY_DATE_EPOCH_DAY).append(" >= ?");
+            args.add(String.valueOf(query.getFromDate()));
+        }
+        if (query.getToDate() != DateUtils.NO_DATE) {
+            where.append(" AND s.").append(KEY_DATE_EPOCH_DAY).append(" <= ?");
+            args.add(String.valueOf(query.getToDate()));
+        }
+        if (query.getCancelled() != null) {
+            where.append(" AND s.").append(KEY_IS_CANCELLED).append(" = ?");
+            args.add(query.getCancelled() ? "1" : "0");
+        }
+        if (after != null) {
+            String afterDay = String.valueOf(after.getSchedule().getEpochDay());
+            String afterId = String.valueOf(after.getSchedule().getId());
+            String dateKeyset = "(s." + KEY_DATE_EPOCH_DAY + " > ? OR (s." + KEY_DATE_EPOCH_DAY
+                    + " = ? AND s." + KEY_ID + " > ?))";
+            if (textMatch != null) {
+                String afterRank = String.valueOf(after.getRank());
+                where.append(" AND (hits.search_rank > ? OR (hits.search_rank = ? AND ")
+                        .append(dateKeyset).append("))");
+                args.add(afterRank);
+                args.add(afterRank);
+            } else {
+                where.append(" AND ").append(dateKeyset);
+            }
+            args.add(afterDay);
+            args.add(afterDay);
+            args.add(afterId);
+        }
+        sql.append(where).append(" ORDER BY search_rank ASC, s.").append(KEY_DATE_EPOCH_DAY)
+                .append(" ASC, s.").append(KEY_ID).append(" ASC LIMIT ").append(limit);
+
+        SQLiteDatabase db = this.getReadableDatabase();
+        try (Cursor cursor = db.rawQuery(sql.toString(), args.toArray(new String[0]), cancellationSignal)) {
+            if (cursor.moveToFirst()) {
+                ScheduleRowMapper scheduleMapper = new ScheduleRowMapper(cursor);
+                CourseRowMapper courseMapper = new CourseRowMapper(cursor, COURSE_PREFIX);
+                int rankIndex = cursor.getColumnIndexOrThrow("search_rank");
+                do {
+                    results.add(new SearchResult(courseMapper.map(cursor), scheduleMapper.map(cursor),
+                            cursor.getInt(rankIndex)));
+                } while (cursor.moveToNext());
+            }
+        }
+        return results;
+    }
+
+    private static String prefixedColumns(String tableAlias, String prefix, String... columns) {
+        StringBuilder projection = new StringBuilder();
+        for (String column : columns) {
+            if (projection.length() > 0) {
+                projection.append(", ");
+            }
+            projection.append(tableAlias).append('.').append(column)
+                    .append(" AS ").append(prefix).append(column);
+        }
+        return projection.toString();
+    }
+
+    // Turns free text into an FTS4 query needing every word: "sam* jo*" anywhere in the document,
+    // or "teacher:sam* teacher:jo*" with a column. Only letters (with their accents) and digits
+    // survive, and they are lower-cased, so user input can never inject FTS operators such as OR.
+    static String buildMatchExpression(String column, String text) {
+        return buildMatchExpression(column, text, " ");
+    }
+
+    // As buildMatchExpression, but any one of the words will do: "teacher:sam* OR teacher:jo*"
+    static String buildAnyMatchExpression(String column, String text) {
+        return buildMatchExpression(column, text, " OR ");
+    }
+
+    private static String buildMatchExpression(String column, String text, String separator) {
+        if (text == null) {
+            return null;
+        }
+        StringBuilder match = new StringBuilder();
+        for (String token : text.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{M}\\p{N}]+")) {
+            if (token.isEmpty()) {
+                continue;
+            }
+            if (match.length() > 0) {
+                match.append(separator);
+            }
+            if (column != null) {
+                match.append(column).append(':');
+            }
+            match.append(token).append('*');
+        }
+        return match.length() == 0 ? null : match.toString();
     }
 
     public int updateSchedule(Schedule schedule) {
         SQLiteDatabase db = this.getWritableDatabase();
         ContentValues values = new ContentValues();
 
-        values.put(KEY_DATE, schedule.getDate());
+        putScheduleDate(values, schedule);
         values.put(KEY_TEACHER, schedule.getTeacher());
         values.put(KEY_COMMENTS, schedule.getComments());
-        values.put(KEY_CURRENT_ENROLLMENT, schedule.getCurrentEnrollment());
+        // current_enrollment is left out: it only changes through tryEnroll/releaseSeats, so an
+        // edit made from a stale copy cannot overwrite seats booked in the meantime
         values.put(KEY_IS_CANCELLED, schedule.isCancelled() ? 1 : 0);
         values.put(KEY_LAST_MODIFIED, schedule.getLastModified());
         values.put(KEY_IS_SYNCED, schedule.isSynced() ? 1 : 0);
 
-        return db.update(TABLE_SCHEDULE, values, KEY_ID + " = ?",
-                new String[]{String.valueOf(schedule.getId())});
+        int rows;
+        synchronized (teacherIndex) {
+            String oldTeacher = getScheduleTeacher(db, schedule.getId());
+            rows = db.update(TABLE_SCHEDULE, values, KEY_ID + " = ?",
+                    new String[]{String.valueOf(schedule.getId())});
+            if (rows > 0) {
+                teacherIndex.remove(oldTeacher);
+                teacherIndex.add(schedule.getTeacher());
+            }
+        }
+        if (rows > 0) {
+            changeNotifier.publish(TABLE_SCHEDULE, schedule.getId());
+        }
+        return rows;
+    }
+
+    private static void putScheduleDate(ContentValues values, Schedule schedule) {
+        values.put(KEY_DATE, schedule.getDate());
+        if (schedule.getEpochDay() == DateUtils.NO_DATE) {
+            values.putNull(KEY_DATE_EPOCH_DAY);
+            values.putNull(KEY_WEEKDAY);
+        } else {
+            values.put(KEY_DATE_EPOCH_DAY, schedule.getEpochDay());
+            values.put(KEY_WEEKDAY, DateUtils.dayOfWeek(schedule.getEpochDay()));
+        }
     }
 
     public void deleteSchedule(int scheduleId) {
         SQLiteDatabase db = this.getWritableDatabase();
-        db.delete(TABLE_SCHEDULE, KEY_ID + " = ?",
+        int rows;
+        synchronized (teacherIndex) {
+            String oldTeacher = getScheduleTeacher(db, scheduleId);
+            // Its bookings go with it through the foreign key
+            rows = db.delete(TABLE_SCHEDULE, KEY_ID + " = ?",
+                    new String[]{String.valueOf(scheduleId)});
+            if (rows > 0) {
+                teacherIndex.remove(oldTeacher);
+            }
+        }
+        if (rows > 0) {
+            changeNotifier.publish(TABLE_SCHEDULE, scheduleId);
+        }
+    }
+
+    // Enrollment counters. Each change is a single conditional UPDATE, so concurrent bookings
+    // can neither lose increments nor overbook; the new count is read back in the same
+    // transaction.
+    private static final String TRY_ENROLL_SQL = "UPDATE " + TABLE_SCHEDULE + " SET "
+            + KEY_CURRENT_ENROLLMENT + " = " + KEY_CURRENT_ENROLLMENT + " + ?1, "
+            + KEY_LAST_MODIFIED + " = ?2, " + KEY_IS_SYNCED + " = 0"
+            + " WHERE " + KEY_ID + " = ?3 AND " + KEY_IS_CANCELLED + " = 0 AND "
+            + KEY_CURRENT_ENROLLMENT + " + ?1 <= (SELECT " + KEY_CAPACITY + " FROM " + TABLE_YOGA_COURSE
+            + " WHERE " + KEY_ID + " = " + TABLE_SCHEDULE + "." + KEY_YOGA_COURSE_ID + ")";
+    private static final String RELEASE_SEATS_SQL = "UPDATE " + TABLE_SCHEDULE + " SET "
+            + KEY_CURRENT_ENROLLMENT + " = " + KEY_CURRENT_ENROLLMENT + " - ?1, "
+            + KEY_LAST_MODIFIED + " = ?2, " + KEY_IS_SYNCED + " = 0"
+            + " WHERE " + KEY_ID + " = ?3 AND " + KEY_CURRENT_ENROLLMENT + " >= ?1";
+
+    // Books seats on a session if the course capacity allows it. Returns the new enrollment,
+    // or -1 when the session is missing, cancelled or would be overbooked.
+    public int tryEnroll(int scheduleId, int seats) {
+        return adjustEnrollment(TRY_ENROLL_SQL, scheduleId, seats);
+    }
+
+    // Gives seats back. Returns the new enrollment, or -1 when the session is missing or has
+    // fewer seats booked than are being released.
+    public int releaseSeats(int scheduleId, int seats) {
+        return adjustEnrollment(RELEASE_SEATS_SQL, scheduleId, seats);
+    }
+
+    private int adjustEnrollment(String sql, int scheduleId, int seats) {
+        if (seats <= 0) {
+            throw new IllegalArgumentException("seats must be positive: " + seats);
+        }
+        SQLiteDatabase db = this.getWritableDatabase();
+        int enrollment;
+        db.beginTransactionNonExclusive();
+        try {
+            enrollment = applyEnrollmentChange(db, sql, scheduleId, seats);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        if (enrollment != -1) {
+            changeNotifier.publish(TABLE_SCHEDULE, scheduleId);
+        }
+        return enrollment;
+    }
+
+    // Must run inside the caller's transaction, which also owns publishing the change
+    private int applyEnrollmentChange(SQLiteDatabase db, String sql, int scheduleId, int seats) {
+        try (SQLiteStatement update = db.compileStatement(sql)) {
+            update.bindLong(1, seats);
+            update.bindLong(2, System.currentTimeMillis());
+            update.bindLong(3, scheduleId);
+            if (update.executeUpdateDelete() != 1) {
+                return -1;
+            }
+        }
+        return (int) DatabaseUtils.longForQuery(db, "SELECT " + KEY_CURRENT_ENROLLMENT
+                + " FROM " + TABLE_SCHEDULE + " WHERE " + KEY_ID + " = ?",
                 new String[]{String.valueOf(scheduleId)});
-        db.close();
+    }
+
+    // Customer and booking operations
+    public long addCustomer(Customer customer) {
+        SQLiteDatabase db = this.getWritableDatabase();
+        ContentValues values = new ContentValues();
+        values.put(KEY_NAME, customer.getName());
+        values.put(KEY_EMAIL, customer.getEmail());
+        return db.insert(TABLE_CUSTOMER, null, values);
+    }
+
+    // Takes a seat on the session for the customer and records it in the ledger. Returns the
+    // booking id, or -1 when the customer already holds a place or the session is missing,
+    // cancelled or full. A previously cancelled booking is reinstated rather than duplicated.
+    public long bookSession(int customerId, int scheduleId) {
+        SQLiteDatabase db = this.getWritableDatabase();
+        long now = System.currentTimeMillis();
+        long bookingId = -1;
+        db.beginTransactionNonExclusive();
+        try {
+            long existingId = -1;
+            String existingStatus = null;
+            try (Cursor cursor = db.query(TABLE_BOOKING, new String[]{KEY_ID, KEY_STATUS},
+                    KEY_CUSTOMER_ID + " = ? AND " + KEY_SCHEDULE_ID + " = ?",
+                    new String[]{String.valueOf(customerId), String.valueOf(scheduleId)}, null, null, null)) {
+                if (cursor.moveToFirst()) {
+                    existingId = cursor.getLong(0);
+                    existingStatus = cursor.getString(1);
+                }
+            }
+            boolean alreadyHoldsSeat = existingId != -1 && !Booking.STATUS_CANCELLED.equals(existingStatus);
+            if (!alreadyHoldsSeat && applyEnrollmentChange(db, TRY_ENROLL_SQL, scheduleId, 1) != -1) {
+                ContentValues values = new ContentValues();
+                values.put(KEY_STATUS, Booking.STATUS_BOOKED);
+                values.put(KEY_LAST_MODIFIED, now);
+                if (existingId != -1) {
+                    db.update(TABLE_BOOKING, values, KEY_ID + " = ?", new String[]{String.valueOf(existingId)});
+                    bookingId = existingId;
+                } else {
+                    values.put(KEY_CUSTOMER_ID, customerId);
+                    values.put(KEY_SCHEDULE_ID, scheduleId);
+                    values.put(KEY_CREATED_AT, now);
+                    bookingId = db.insertOrThrow(TABLE_BOOKING, null, values);
+                }
+                db.setTransactionSuccessful();
+            }
+        } finally {
+            db.endTransaction();
+        }
+        if (bookingId != -1) {
+            changeNotifier.publish(TABLE_SCHEDULE, scheduleId);
+        }
+        return bookingId;
+    }
+
+    // Marks the booking cancelled and gives its seat back; false if it was already cancelled
+    // or does not exist. The ledger row is kept for the customer's history.
+    public boolean cancelBooking(int bookingId) {
+        SQLiteDatabase db = this.getWritableDatabase();
+        int scheduleId = -1;
+        db.beginTransactionNonExclusive();
+        try {
+            try (Cursor cursor = db.query(TABLE_BOOKING, new String[]{KEY_SCHEDULE_ID},
+                    KEY_ID + " = ? AND " + KEY_STATUS + " != ?",
+                    new String[]{String.valueOf(bookingId), Booking.STATUS_CANCELLED}, null, null, null)) {
+                if (cursor.moveToFirst()) {
+                    scheduleId = cursor.getInt(0);
+                }
+            }
+            if (scheduleId != -1) {
+                ContentValues values = new ContentValues();
+                values.put(KEY_STATUS, Booking.STATUS_CANCELLED);
+                values.put(KEY_LAST_MODIFIED, System.currentTimeMillis());
+                db.update(TABLE_BOOKING, values, KEY_ID + " = ?", new String[]{String.valueOf(bookingId)});
+                // A counter that has already drifted below the ledger refuses the release;
+                // reconcileEnrollment() puts it right
+                applyEnrollmentChange(db, RELEASE_SEATS_SQL, scheduleId, 1);
+                db.setTransactionSuccessful();
+            }
+        } finally {
+            db.endTransaction();
+        }
+        if (scheduleId == -1) {
+            return false;
+        }
+        changeNotifier.publish(TABLE_SCHEDULE, scheduleId);
+        return true;
+    }
+
+    // Customers holding a place on the session, by name, through the schedule/status index
+    public List<Customer> getRoster(int scheduleId) {
+        SQLiteDatabase db = this.getReadableDatabase();
+        List<Customer> roster = new ArrayList<>();
+        try (Cursor cursor = db.rawQuery("SELECT c." + KEY_ID + ", c." + KEY_NAME + ", c." + KEY_EMAIL
+                + " FROM " + TABLE_BOOKING + " b JOIN " + TABLE_CUSTOMER + " c ON c." + KEY_ID + " = b." + KEY_CUSTOMER_ID
+                + " WHERE b." + KEY_SCHEDULE_ID + " = ? AND b." + KEY_STATUS + " != ?"
+                + " ORDER BY c." + KEY_NAME + " COLLATE NOCASE, c." + KEY_ID,
+                new String[]{String.valueOf(scheduleId), Booking.STATUS_CANCELLED})) {
+            while (cursor.moveToNext()) {
+                Customer customer = new Customer(cursor.getString(1), cursor.getString(2));
+                customer.setId(cursor.getInt(0));
+                roster.add(customer);
+            }
+        }
+        return roster;
+    }
+
+    // Every booking the customer has made, cancelled ones included, latest session first
+    public List<Booking> getBookingsForCustomer(int customerId) {
+        SQLiteDatabase db = this.getReadableDatabase();
+        try (Cursor cursor = db.rawQuery("SELECT b.* FROM " + TABLE_BOOKING + " b JOIN " + TABLE_SCHEDULE
+                + " s ON s." + KEY_ID + " = b." + KEY_SCHEDULE_ID + " WHERE b." + KEY_CUSTOMER_ID + " = ?"
+                + " ORDER BY s." + KEY_DATE_EPOCH_DAY + " DESC, s." + KEY_ID + " DESC",
+                new String[]{String.valueOf(customerId)})) {
+            return BookingRowMapper.mapAll(cursor);
+        }
+    }
+
+    // Keyed on (customer_id, schedule_id) rather than id, since imported ids come from another
+    // device's numbering. Both statements bind status, created_at, last_modified, customer_id,
+    // schedule_id in that order.
+    private static final String UPSERT_BOOKING_UPDATE = "UPDATE " + TABLE_BOOKING + " SET "
+            + KEY_STATUS + "=?," + KEY_CREATED_AT + "=?," + KEY_LAST_MODIFIED + "=?"
+            + " WHERE " + KEY_CUSTOMER_ID + "=? AND " + KEY_SCHEDULE_ID + "=?";
+    private static final String UPSERT_BOOKING_INSERT = "INSERT INTO " + TABLE_BOOKING + "("
+            + KEY_STATUS + "," + KEY_CREATED_AT + "," + KEY_LAST_MODIFIED + ","
+            + KEY_CUSTOMER_ID + "," + KEY_SCHEDULE_ID + ") VALUES (?,?,?,?,?)";
+
+    // Writes the bookings into the ledger, then brings the enrollment of every session they
+    // touch in line with it. Capacity is not enforced: imported bookings are already taken.
+    public int bulkImportBookings(Collection<Booking> bookings) {
+        SQLiteDatabase db = this.getWritableDatabase();
+        SQLiteStatement update = db.compileStatement(UPSERT_BOOKING_UPDATE);
+        SQLiteStatement insert = db.compileStatement(UPSERT_BOOKING_INSERT);
+        Set<Integer> scheduleIds = new HashSet<>();
+        List<Integer> corrected;
+        int written = 0;
+
+        db.beginTransaction();
+        try {
+            for (Booking booking : bookings) {
+                try {
+                    bindBooking(update, booking);
+                    if (update.executeUpdateDelete() == 0) {
+                        bindBooking(insert, booking);
+                        insert.executeInsert();
+                    }
+                } catch (SQLiteConstraintException e) {
+                    // Its customer or session has been deleted here
+                    continue;
+                }
+                scheduleIds.add(booking.getScheduleId());
+                if (++written % BULK_CHUNK_SIZE == 0) {
+                    db.yieldIfContendedSafely();
+                }
+            }
+            corrected = scheduleIds.isEmpty() ? new ArrayList<>() : reconcileEnrollment(db, scheduleIds);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+            update.close();
+            insert.close();
+        }
+        changeNotifier.publish(TABLE_SCHEDULE, corrected);
+        return written;
+    }
+
+    // Resets current_enrollment to the ledger's count of seat-holding bookings wherever the two
+    // disagree, and returns how many sessions were corrected. Sessions with no ledger rows at
+    // all keep their counter, which predates the ledger or came from the cloud.
+    public int reconcileEnrollment() {
+        SQLiteDatabase db = this.getWritableDatabase();
+        List<Integer> corrected;
+        db.beginTransactionNonExclusive();
+        try {
+            corrected = reconcileEnrollment(db, null);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        changeNotifier.publish(TABLE_SCHEDULE, corrected);
+        return corrected.size();
+    }
+
+    // One pass over idx_booking_schedule_status counts every session's seats; only the sessions
+    // that drifted are rewritten. Pass null to cover every session in the ledger.
+    private List<Integer> reconcileEnrollment(SQLiteDatabase db, Collection<Integer> scheduleIds) {
+        String ledgerFilter = scheduleIds == null ? ""
+                : " WHERE " + KEY_SCHEDULE_ID + " IN (" + joinIds(scheduleIds) + ")";
+        List<Integer> corrected = new ArrayList<>();
+        try (Cursor cursor = db.rawQuery("SELECT s." + KEY_ID + ", ledger.seats FROM (SELECT "
+                + KEY_SCHEDULE_ID + ", SUM(" + KEY_STATUS + " != ?) AS seats FROM " + TABLE_BOOKING
+                + ledgerFilter + " GROUP BY " + KEY_SCHEDULE_ID + ") ledger JOIN " + TABLE_SCHEDULE
+                + " s ON s." + KEY_ID + " = ledger." + KEY_SCHEDULE_ID
+                + " WHERE s." + KEY_CURRENT_ENROLLMENT + " IS NOT ledger.seats",
+                new String[]{Booking.STATUS_CANCELLED});
+             SQLiteStatement update = db.compileStatement("UPDATE " + TABLE_SCHEDULE + " SET "
+                     + KEY_CURRENT_ENROLLMENT + " = ?, " + KEY_LAST_MODIFIED + " = ?, " + KEY_IS_SYNCED
+                     + " = 0 WHERE " + KEY_ID + " = ?")) {
+            long now = System.currentTimeMillis();
+            while (cursor.moveToNext()) {
+                update.bindLong(1, cursor.getLong(1));
+                update.bindLong(2, now);
+                update.bindLong(3, cursor.getLong(0));
+                update.executeUpdateDelete();
+                corrected.add(cursor.getInt(0));
+            }
+        }
+        return corrected;
+    }
+
+    private static void bindBooking(SQLiteStatement statement, Booking booking) {
+        statement.clearBindings();
+        bindString(statement, 1, booking.getStatus());
+        statement.bindLong(2, booking.getCreatedAt());
+        statement.bindLong(3, booking.getLastModified());
+        statement.bindLong(4, booking.getCustomerId());
+        statement.bindLong(5, booking.getScheduleId());
     }
 
     // Sync operations
-    public List<YogaCourse> getUnsyncedCourses() {
-        List<YogaCourse> courses = new ArrayList<>();
+    // Pending changes in the order they were made, starting after afterSeq (0 for the oldest)
+    public List<OutboxEntry> getOutboxEntries(long afterSeq, int limit) {
         SQLiteDatabase db = this.getReadableDatabase();
-        
-        Cursor cursor = db.query(TABLE_YOGA_COURSE, null,
-                KEY_IS_SYNCED + "=?", new String[]{"0"},
-                null, null, null);
-
-        if (cursor.moveToFirst()) {
-            do {
-                YogaCourse course = new YogaCourse();
-                course.setId(cursor.getInt(cursor.getColumnIndexOrThrow(KEY_ID)));
-                course.setDayOfWeek(cursor.getString(cursor.getColumnIndexOrThrow(KEY_DAY_OF_WEEK)));
-                course.setTime(cursor.getString(cursor.getColumnIndexOrThrow(KEY_TIME)));
-                course.setPrice(cursor.getFloat(cursor.getColumnIndexOrThrow(KEY_PRICE)));
-                course.setCapacity(cursor.getInt(cursor.getColumnIndexOrThrow(KEY_CAPACITY)));
-                course.setDuration(cursor.getInt(cursor.getColumnIndexOrThrow(KEY_DURATION)));
-                course.setType(cursor.getString(cursor.getColumnIndexOrThrow(KEY_TYPE)));
-                course.setDescription(cursor.getString(cursor.getColumnIndexOrThrow(KEY_DESCRIPTION)));
-                course.setActive(cursor.getInt(cursor.getColumnIndexOrThrow(KEY_IS_ACTIVE)) == 1);
-                course.setDifficulty(cursor.getString(cursor.getColumnIndexOrThrow(KEY_DIFFICULTY)));
-                course.setEquipment(cursor.getString(cursor.getColumnIndexOrThrow(KEY_EQUIPMENT)));
-                course.setLastModified(cursor.getLong(cursor.getColumnIndexOrThrow(KEY_LAST_MODIFIED)));
-                course.setSynced(cursor.getInt(cursor.getColumnIndexOrThrow(KEY_IS_SYNCED)) == 1);
-                courses.add(course);
-            } while (cursor.moveToNext());
-        }
-        cursor.close();
-        db.close();
-        return courses;
-    }
-
-    public List<Schedule> getUnsyncedSchedules() {
-        List<Schedule> schedules = new ArrayList<>();
+        List<OutboxEntry> entries = new ArrayList<>();
+        try (Cursor cursor = db.query(TABLE_SYNC_OUTBOX, null, KEY_SEQ + " > ?",
+                new String[]{String.valueOf(afterSeq)}, null, null, KEY_SEQ + " ASC", String.valueOf(limit))) {
+            if (cursor.moveToFirst()) {
+                int seqIndex = cursor.getColumnIndexOrThrow(KEY_SEQ);
+                int entityIndex = cursor.getColumnIndexOrThrow(KEY_ENTITY);
+                int entityIdIndex = cursor.getColumnIndexOrThrow(KEY_ENTITY_ID);
+                int operationIndex = cursor.getColumnIndexOrThrow(KEY_OPERATION);
+                int changedFieldsIndex = cursor.getColumnIndexOrThrow(KEY_CHANGED_FIELDS);
+                int createdAtIndex = cursor.getColumnIndexOrThrow(KEY_CREATED_AT);
+                do {
+                    entries.add(new OutboxEntry(cursor.getLong(seqIndex), cursor.getString(entityIndex),
+                            cursor.getInt(entityIdIndex), cursor.getString(operationIndex),
+                            cursor.getString(changedFieldsIndex), cursor.getLong(createdAtIndex)));
+                } while (cursor.moveToNext());
+            }
+        }
+        return entries;
+    }
+
+    // Trims every entry up to and including throughSeq once the cloud has acknowledged them, and
+    // marks their rows synced unless a later change is still waiting. Returns entries removed.
+    public int acknowledgeOutbox(long throughSeq) {
+        SQLiteDatabase db = this.getWritableDatabase();
+        String[] args = {String.valueOf(throughSeq)};
+        List<Integer> courseIds = new ArrayList<>();
+        int removed;
+        db.beginTransactionNonExclusive();
+        try {
+            try (Cursor cursor = db.query(true, TABLE_SYNC_OUTBOX, new String[]{KEY_ENTITY_ID},
+                    KEY_ENTITY + " = ? AND " + KEY_SEQ + " <= ?", new String[]{TABLE_YOGA_COURSE, args[0]},
+                    null, null, null, null)) {
+                while (cursor.moveToNext()) {
+                    courseIds.add(cursor.getInt(0));
+                }
+            }
+            for (String table : new String[]{TABLE_YOGA_COURSE, TABLE_SCHEDULE}) {
+                String entries = "SELECT " + KEY_ENTITY_ID + " FROM " + TABLE_SYNC_OUTBOX
+                        + " WHERE " + KEY_ENTITY + " = '" + table + "' AND " + KEY_SEQ;
+                db.execSQL("UPDATE " + table + " SET " + KEY_IS_SYNCED + " = 1 WHERE " + KEY_ID + " IN ("
+                        + entries + " <= ?1) AND " + KEY_ID + " NOT IN (" + entries + " > ?1)", args);
+            }
+            removed = db.delete(TABLE_SYNC_OUTBOX, KEY_SEQ + " <= ?", args);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        // Cached copies still carry the old flag
+        for (int courseId : courseIds) {
+            courseCache.remove(courseId);
+        }
+        return removed;
+    }
+
+    // Cloud serverModified up to which the table has been pulled; 0 before the first pull
+    public long getSyncWatermark(String table) {
         SQLiteDatabase db = this.getReadableDatabase();
-        
-        Cursor cursor = db.query(TABLE_SCHEDULE, null,
-                KEY_IS_SYNCED + "=?", new String[]{"0"},
-                null, null, null);
-
-        if (cursor.moveToFirst()) {
-            do {
-                Schedule schedule = new Schedule();
-                schedule.setId(cursor.getInt(cursor.getColumnIndexOrThrow(KEY_ID)));
-                schedule.setDate(cursor.getString(cursor.getColumnIndexOrThrow(KEY_DATE)));
-                schedule.setTeacher(cursor.getString(cursor.getColumnIndexOrThrow(KEY_TEACHER)));
-                schedule.setComments(cursor.getString(cursor.getColumnIndexOrThrow(KEY_COMMENTS)));
-                schedule.setYogaCourseId(cursor.getInt(cursor.getColumnIndexOrThrow(KEY_YOGA_COURSE_ID)));
-                schedule.setCurrentEnrollment(cursor.getInt(cursor.getColumnIndexOrThrow(KEY_CURRENT_ENROLLMENT)));
-                schedule.setCancelled(cursor.getInt(cursor.getColumnIndexOrThrow(KEY_IS_CANCELLED)) == 1);
-                schedule.setLastModified(cursor.getLong(cursor.getColumnIndexOrThrow(KEY_LAST_MODIFIED)));
-                schedule.setSynced(cursor.getInt(cursor.getColumnIndexOrThrow(KEY_IS_SYNCED)) == 1);
-                schedules.add(schedule);
-            } while (cursor.moveToNext());
-        }
-        cursor.close();
-        db.close();
-        return schedules;
-    }
-}
\ No newline at end of file
+        try (Cursor cursor = db.query(TABLE_SYNC_STATE, new String[]{KEY_WATERMARK}, KEY_TABLE_NAME + " = ?",
+                new String[]{table}, null, null, null)) {
+            return cursor.moveToFirst() ? cursor.getLong(0) : 0;
+        }
+    }
+
+    // Only ever moves forward; called inside the transaction that applies the pulled rows
+    private static void advanceSyncWatermark(SQLiteDatabase db, String table, long watermark) {
+        db.execSQL("INSERT OR REPLACE INTO " + TABLE_SYNC_STATE + "(" + KEY_TABLE_NAME + ", " + KEY_WATERMARK
+                + ") VALUES (?1, MAX(?2, IFNULL((SELECT " + KEY_WATERMARK + " FROM " + TABLE_SYNC_STATE
+                + " WHERE " + KEY_TABLE_NAME + " = ?1), 0)))", new Object[]{table, watermark});
+    }
+
+    // Bulk operations
+    // Both statements bind the same parameters in the same order (id last), so one
+    // binder serves the UPDATE and the INSERT.
+    private static final String UPSERT_COURSE_UPDATE = "UPDATE " + TABLE_YOGA_COURSE + " SET "
+            + KEY_DAY_OF_WEEK + "=?," + KEY_TIME + "=?," + KEY_PRICE + "=?," + KEY_CAPACITY + "=?,"
+            + KEY_DURATION + "=?," + KEY_TYPE + "=?," + KEY_DESCRIPTION + "=?," + KEY_IS_ACTIVE + "=?,"
+            + KEY_DIFFICULTY + "=?," + KEY_EQUIPMENT + "=?," + KEY_LAST_MODIFIED + "=?," + KEY_IS_SYNCED + "=?"
+            + " WHERE " + KEY_ID + "=?";
+    private static final String UPSERT_COURSE_INSERT = "INSERT INTO " + TABLE_YOGA_COURSE + "("
+            + KEY_DAY_OF_WEEK + "," + KEY_TIME + "," + KEY_PRICE + "," + KEY_CAPACITY + ","
+            + KEY_DURATION + "," + KEY_TYPE + "," + KEY_DESCRIPTION + "," + KEY_IS_ACTIVE + ","
+            + KEY_DIFFICULTY + "," + KEY_EQUIPMENT + "," + KEY_LAST_MODIFIED + "," + KEY_IS_SYNCED + ","
+            + KEY_ID + ") VALUES (?,?,?,?,?,?,?,?,?,?,?,?,?)";
+    private static final String UPSERT_SCHEDULE_UPDATE = "UPDATE " + TABLE_SCHEDULE + " SET "
+            + KEY_DATE + "=?," + KEY_DATE_EPOCH_DAY + "=?," + KEY_WEEKDAY + "=?,"
+            + KEY_TEACHER + "=?," + KEY_COMMENTS + "=?," + KEY_YOGA_COURSE_ID + "=?,"
+            + KEY_CURRENT_ENROLLMENT + "=?," + KEY_IS_CANCELLED + "=?," + KEY_LAST_MODIFIED + "=?,"
+            + KEY_IS_SYNCED + "=?"
+            + " WHERE " + KEY_ID + "=?";
+    private static final String UPSERT_SCHEDULE_INSERT = "INSERT INTO " + TABLE_SCHEDULE + "("
+            + KEY_DATE + "," + KEY_DATE_EPOCH_DAY + "," + KEY_WEEKDAY + ","
+            + KEY_TEACHER + "," + KEY_COMMENTS + "," + KEY_YOGA_COURSE_ID + ","
+            + KEY_CURRENT_ENROLLMENT + "," + KEY_IS_CANCELLED + "," + KEY_LAST_MODIFIED + ","
+            + KEY_IS_SYNCED + "," + KEY_ID + ") VALUES (?,?,?,?,?,?,?,?,?,?,?)";
+
+    // Applies one sync run's pulled rows by last-writer-wins on lastModified:
+    // - rows missing locally are inserted
+    // - rows with nothing in the outbox are applied only when the pulled copy is newer
+    // - rows with an outbox entry, including a delete not yet pushed, are conflicts. The
+    //   later write wins; on equal timestamps the pulled copy wins only if PulledChanges says
+    //   so. A local edit that loses has its outbox entries dropped.
+    // Courses go in before schedules, and both tables and their watermarks commit in a single
+    // transaction with no yields, so no reader ever sees a pulled schedule without its course
+    // and an interrupted apply leaves both tables to be pulled again. Local edits wait on the
+    // writer thread meanwhile rather than landing between the two tables.
+    public MergeReport mergePulled(PulledChanges changes) {
+        SQLiteDatabase db = this.getWritableDatabase();
+        SQLiteStatement courseUpdate = db.compileStatement(UPSERT_COURSE_UPDATE);
+        SQLiteStatement courseInsert = db.compileStatement(UPSERT_COURSE_INSERT);
+        SQLiteStatement scheduleUpdate = db.compileStatement(UPSERT_SCHEDULE_UPDATE);
+        SQLiteStatement scheduleInsert = db.compileStatement(UPSERT_SCHEDULE_INSERT);
+        List<Integer> appliedCourses = new ArrayList<>();
+        List<Integer> appliedSchedules = new ArrayList<>();
+        MergeReport report = new MergeReport();
+
+        db.beginTransaction();
+        try {
+            mergeCourseRows(db, changes, courseUpdate, courseInsert, report, appliedCourses);
+            advanceSyncWatermark(db, TABLE_YOGA_COURSE, changes.getCourseWatermark());
+            mergeScheduleRows(db, changes, scheduleUpdate, scheduleInsert, report, appliedSchedules);
+            advanceSyncWatermark(db, TABLE_SCHEDULE, changes.getScheduleWatermark());
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+            courseUpdate.close();
+            courseInsert.close();
+            scheduleUpdate.close();
+            scheduleInsert.close();
+        }
+        // Merged rows are re-read on demand rather than churning the LRU with the whole batch
+        for (int id : appliedCourses) {
+            courseCache.remove(id);
+        }
+        if (!appliedSchedules.isEmpty()) {
+            // Rebuilt on next use; any build that overlapped the transaction finishes first
+            teacherIndex.invalidate();
+        }
+        changeNotifier.publish(TABLE_YOGA_COURSE, appliedCourses);
+        changeNotifier.publish(TABLE_SCHEDULE, appliedSchedules);
+        return report;
+    }
+
+    // Upserts for rows from elsewhere, e.g. an import: each row is written as given, updated by
+    // id or inserted under its own id when missing. One transaction over precompiled statements,
+    // yielding every BULK_CHUNK_SIZE rows if another writer is waiting. Unlike mergePulled there
+    // is no version check and neither the watermarks nor the outbox are touched beyond what the
+    // triggers log for rows given with isSynced false. Returns the rows written.
+    public int bulkUpsertCourses(Collection<YogaCourse> courses) {
+        SQLiteDatabase db = this.getWritableDatabase();
+        SQLiteStatement update = db.compileStatement(UPSERT_COURSE_UPDATE);
+        SQLiteStatement insert = db.compileStatement(UPSERT_COURSE_INSERT);
+        List<Integer> written = new ArrayList<>(courses.size());
+
+        db.beginTransaction();
+        try {
+            for (YogaCourse course : courses) {
+                bindCourse(update, course);
+                if (update.executeUpdateDelete() == 0) {
+                    bindCourse(insert, course);
+                    insert.executeInsert();
+                }
+                written.add(course.getId());
+                if (written.size() % BULK_CHUNK_SIZE == 0) {
+                    db.yieldIfContendedSafely();
+                }
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+            update.close();
+            insert.close();
+        }
+        for (int id : written) {
+            courseCache.remove(id);
+        }
+        changeNotifier.publish(TABLE_YOGA_COURSE, written);
+        return written.size();
+    }
+
+    public int bulkUpsertSchedules(Collection<Schedule> schedules) {
+        SQLiteDatabase db = this.getWritableDatabase();
+        SQLiteStatement update = db.compileStatement(UPSERT_SCHEDULE_UPDATE);
+        SQLiteStatement insert = db.compileStatement(UPSERT_SCHEDULE_INSERT);
+        List<Integer> written = new ArrayList<>(schedules.size());
+
+        db.beginTransaction();
+        try {
+            for (Schedule schedule : schedules) {
+                bindSchedule(update, schedule);
+                if (update.executeUpdateDelete() == 0) {
+                    bindSchedule(insert, schedule);
+                    insert.executeInsert();
+                }
+                written.add(schedule.getId());
+                if (written.size() % BULK_CHUNK_SIZE == 0) {
+                    db.yieldIfContendedSafely();
+                }
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+            update.close();
+            insert.close();
+        }
+        if (!written.isEmpty()) {
+            teacherIndex.invalidate();
+        }
+        changeNotifier.publish(TABLE_SCHEDULE, written);
+        return written.size();
+    }
+
+    private static void mergeCourseRows(SQLiteDatabase db, PulledChanges changes, SQLiteStatement update,
+                                        SQLiteStatement insert, MergeReport report, List<Integer> applied) {
+        List<YogaCourse> courses = changes.getCourses();
+        for (int start = 0; start < courses.size(); start += BULK_CHUNK_SIZE) {
+            List<YogaCourse> chunk = courses.subList(start, Math.min(start + BULK_CHUNK_SIZE, courses.size()));
+            List<Integer> ids = new ArrayList<>(chunk.size());
+            for (YogaCourse course : chunk) {
+                ids.add(course.getId());
+            }
+            Map<Integer, LocalVersion> versions = getLocalVersions(db, TABLE_YOGA_COURSE, ids);
+            for (YogaCourse course : chunk) {
+                LocalVersion local = versions.get(course.getId());
+                if (!resolveMerge(local, course.getLastModified(), changes.courseWinsTie(course.getId()), report)) {
+                    continue;
+                }
+                SQLiteStatement statement = local == null || local.deleted ? insert : update;
+                bindCourse(statement, course);
+                statement.execute();
+                recordApplied(local, report);
+                if (local != null && local.pending) {
+                    discardOutbox(db, TABLE_YOGA_COURSE, course.getId());
+                }
+                applied.add(course.getId());
+            }
+        }
+    }
+
+    // A schedule whose course has been deleted here is skipped
+    private static void mergeScheduleRows(SQLiteDatabase db, PulledChanges changes, SQLiteStatement update,
+                                          SQLiteStatement insert, MergeReport report, List<Integer> applied) {
+        List<Schedule> schedules = changes.getSchedules();
+        for (int start = 0; start < schedules.size(); start += BULK_CHUNK_SIZE) {
+            List<Schedule> chunk = schedules.subList(start, Math.min(start + BULK_CHUNK_SIZE, schedules.size()));
+            List<Integer> ids = new ArrayList<>(chunk.size());
+            for (Schedule schedule : chunk) {
+                ids.add(schedule.getId());
+            }
+            Map<Integer, LocalVersion> versions = getLocalVersions(db, TABLE_SCHEDULE, ids);
+            for (Schedule schedule : chunk) {
+                LocalVersion local = versions.get(schedule.getId());
+                if (!resolveMerge(local, schedule.getLastModified(), changes.scheduleWinsTie(schedule.getId()), report)) {
+                    continue;
+                }
+                SQLiteStatement statement = local == null || local.deleted ? insert : update;
+                try {
+                    bindSchedule(statement, schedule);
+                    statement.execute();
+                } catch (SQLiteConstraintException e) {
+                    // Its course has been deleted here; only this statement is rolled back
+                    report.recordSkipped();
+                    continue;
+                }
+                recordApplied(local, report);
+                if (local != null && local.pending) {
+                    discardOutbox(db, TABLE_SCHEDULE, schedule.getId());
+                }
+                applied.add(schedule.getId());
+            }
+        }
+    }
+
+    // What the local side holds for a pulled row's id
+    private static final class LocalVersion {
+        final long lastModified;
+        // An unsynced edit or delete is waiting in the outbox
+        final boolean pending;
+        // Only a pending delete is left
+        final boolean deleted;
+
+        LocalVersion(long lastModified, boolean pending, boolean deleted) {
+            this.lastModified = lastModified;
+            this.pending = pending;
+            this.deleted = deleted;
+        }
+    }
+
+    // True when the pulled copy should be written. local is null when the row has never
+    // existed here, or was deleted and the delete has already been pushed. Only conflicts and
+    // skips are counted here; a write is counted once its statement has run.
+    private static boolean resolveMerge(LocalVersion local, long remoteModified, boolean remoteWinsTie,
+                                        MergeReport report) {
+        if (local == null) {
+            return true;
+        }
+        if (local.pending) {
+            report.recordConflict();
+        }
+        boolean remoteNewer = remoteModified > local.lastModified
+                || (local.pending && remoteModified == local.lastModified && remoteWinsTie);
+        if (!remoteNewer) {
+            report.recordSkipped();
+            return false;
+        }
+        return true;
+    }
+
+    private static void recordApplied(LocalVersion local, MergeReport report) {
+        if (local == null || local.deleted) {
+            report.recordInserted();
+        } else {
+            report.recordUpdated();
+        }
+    }
+
+    // Local rows for the ids, plus deletes still in the outbox for ids that have no row; a
+    // delete counts as written when it was logged
+    private static Map<Integer, LocalVersion> getLocalVersions(SQLiteDatabase db, String table,
+                                                               Collection<Integer> ids) {
+        Map<Integer, LocalVersion> versions = new HashMap<>();
+        String idList = joinIds(ids);
+        // Pending means an entry not yet acknowledged, not is_synced: the flag is only a cached
+        // view of the outbox
+        try (Cursor cursor = db.rawQuery("SELECT t." + KEY_ID + ", t." + KEY_LAST_MODIFIED + ", EXISTS (SELECT 1 FROM "
+                + TABLE_SYNC_OUTBOX + " o WHERE o." + KEY_ENTITY + " = ? AND o." + KEY_ENTITY_ID + " = t." + KEY_ID
+                + ") FROM " + table + " t WHERE t." + KEY_ID + " IN (" + idList + ")", new String[]{table})) {
+            while (cursor.moveToNext()) {
+                versions.put(cursor.getInt(0), new LocalVersion(cursor.getLong(1), cursor.getInt(2) != 0, false));
+            }
+        }
+        try (Cursor cursor = db.rawQuery("SELECT " + KEY_ENTITY_ID + ", MAX(" + KEY_CREATED_AT + ") FROM "
+                + TABLE_SYNC_OUTBOX + " WHERE " + KEY_ENTITY + " = ? AND " + KEY_OPERATION + " = ? AND "
+                + KEY_ENTITY_ID + " IN (" + idList + ") AND " + KEY_ENTITY_ID + " NOT IN (SELECT " + KEY_ID
+                + " FROM " + table + ") GROUP BY " + KEY_ENTITY_ID,
+                new String[]{table, OutboxEntry.OP_DELETE})) {
+            while (cursor.moveToNext()) {
+                versions.put(cursor.getInt(0), new LocalVersion(cursor.getLong(1), true, true));
+            }
+        }
+        return versions;
+    }
+
+    // The local edit lost to a newer cloud copy, so there is nothing left of it to push
+    private static void discardOutbox(SQLiteDatabase db, String table, int id) {
+        db.delete(TABLE_SYNC_OUTBOX, KEY_ENTITY + " = ? AND " + KEY_ENTITY_ID + " = ?",
+                new String[]{table, String.valueOf(id)});
+    }
+
+    private static void bindCourse(SQLiteStatement statement, YogaCourse course) {
+        statement.clearBindings();
+        bindString(statement, 1, course.getDayOfWeek());
+        bindString(statement, 2, course.getTime());
+        statement.bindDouble(3, course.getPrice());
+        statement.bindLong(4, course.getCapacity());
+        statement.bindLong(5, course.getDuration());
+        bindString(statement, 6, course.getType());
+        bindString(statement, 7, course.getDescription());
+        statement.bindLong(8, course.isActive() ? 1 : 0);
+        bindString(statement, 9, course.getDifficulty());
+        bindString(statement, 10, course.getEquipment());
+        statement.bindLong(11, course.getLastModified());
+        statement.bindLong(12, course.isSynced() ? 1 : 0);
+        statement.bindLong(13, course.getId());
+    }
+
+    private static void bindSchedule(SQLiteStatement statement, Schedule schedule) {
+        statement.clearBindings();
+        bindString(statement, 1, schedule.getDate());
+        if (schedule.getEpochDay() == DateUtils.NO_DATE) {
+            statement.bindNull(2);
+            statement.bindNull(3);
+        } else {
+            statement.bindLong(2, schedule.getEpochDay());
+            statement.bindLong(3, DateUtils.dayOfWeek(schedule.getEpochDay()));
+        }
+        bindString(statement, 4, schedule.getTeacher());
+        bindString(statement, 5, schedule.getComments());
+        statement.bindLong(6, schedule.getYogaCourseId());
+        statement.bindLong(7, schedule.getCurrentEnrollment());
+        statement.bindLong(8, schedule.isCancelled() ? 1 : 0);
+        statement.bindLong(9, schedule.getLastModified());
+        statement.bindLong(10, schedule.isSynced() ? 1 : 0);
+        statement.bindLong(11, schedule.getId());
+    }
+
+    private static void bindString(SQLiteStatement statement, int index, String value) {
+        if (value == null) {
+            statement.bindNull(index);
+        } else {
+            statement.bindString(index, value);
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.example.yogaadmin.db;
+
+import java.util.Locale;
+
+// Outcome of merging pulled cloud records into local tables. Conflicts are records that met an
+// unsynced local edit; each is also counted as updated or skipped, depending on which side won.
+// Skipped also counts schedules whose course has been deleted here.
+public class MergeReport {
+    private int inserted;
+    private int updated;
+    private int skipped;
+    private int conflicts;
+
+    void recordInserted() {
+        inserted++;
+    }
+
+    void recordUpdated() {
+        updated++;
+    }
+
+    void recordSkipped() {
+        skipped++;
+    }
+
+    void recordConflict() {
+        conflicts++;
+    }
+
+    public void add(MergeReport other) {
+        inserted += other.inserted;
+        updated += other.updated;
+        skipped += other.skipped;
+        conflicts += other.conflicts;
+    }
+
+    public int getInserted() { return inserted; }
+    public int getUpdated() { return updated; }
+    public int getSkipped() { return skipped; }
+    public int getConflicts() { return conflicts; }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.UK, "%d inserted, %d updated, %d skipped, %d conflicts",
+                inserted, updated, skipped, conflicts);
+    }
+}
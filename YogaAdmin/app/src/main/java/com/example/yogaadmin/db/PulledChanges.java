@@ -0,0 +1,63 @@
+package com.example.yogaadmin.db;
+
+import com.example.yogaadmin.models.Schedule;
+import com.example.yogaadmin.models.YogaCourse;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+// Everything one sync run pulled, buffered so DatabaseHelper.mergePulled can apply both tables
+// together. Each watermark is the cloud serverModified its table has been pulled through.
+public class PulledChanges {
+    private final List<YogaCourse> courses = new ArrayList<>();
+    private final List<Schedule> schedules = new ArrayList<>();
+    // Ids whose cloud copy wins an equal-timestamp conflict
+    private final Set<Integer> courseTieWins = new HashSet<>();
+    private final Set<Integer> scheduleTieWins = new HashSet<>();
+    private long courseWatermark;
+    private long scheduleWatermark;
+
+    public void addCourse(YogaCourse course, boolean winsTie) {
+        courses.add(course);
+        if (winsTie) {
+            courseTieWins.add(course.getId());
+        }
+    }
+
+    public void addSchedule(Schedule schedule, boolean winsTie) {
+        schedules.add(schedule);
+        if (winsTie) {
+            scheduleTieWins.add(schedule.getId());
+        }
+    }
+
+    public void setCourseWatermark(long courseWatermark) { this.courseWatermark = courseWatermark; }
+
+    public void setScheduleWatermark(long scheduleWatermark) { this.scheduleWatermark = scheduleWatermark; }
+
+    public int getCourseCount() { return courses.size(); }
+
+    public int getScheduleCount() { return schedules.size(); }
+
+    public boolean isEmpty() {
+        return courses.isEmpty() && schedules.isEmpty();
+    }
+
+    public List<YogaCourse> getCourses() { return courses; }
+
+    public List<Schedule> getSchedules() { return schedules; }
+
+    public long getCourseWatermark() { return courseWatermark; }
+
+    public long getScheduleWatermark() { return scheduleWatermark; }
+
+    boolean courseWinsTie(int id) {
+        return courseTieWins.contains(id);
+    }
+
+    boolean scheduleWinsTie(int id) {
+        return scheduleTieWins.contains(id);
+    }
+}
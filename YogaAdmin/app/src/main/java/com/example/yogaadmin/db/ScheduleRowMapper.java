@@ -0,0 +1,72 @@
+package com.example.yogaadmin.db;
+
+import android.database.Cursor;
+
+import com.example.yogaadmin.models.Schedule;
+import com.example.yogaadmin.utils.DateUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Resolves schedule column positions once per cursor and builds schedules through the
+// hydration constructor, so reading rows never goes through the dirty-tracking setters.
+class ScheduleRowMapper {
+    private final int idIndex;
+    private final int dateIndex;
+    private final int epochDayIndex;
+    private final int teacherIndex;
+    private final int commentsIndex;
+    private final int yogaCourseIdIndex;
+    private final int currentEnrollmentIndex;
+    private final int isCancelledIndex;
+    private final int lastModifiedIndex;
+    private final int isSyncedIndex;
+
+    ScheduleRowMapper(Cursor cursor) {
+        this(cursor, "");
+    }
+
+    // For joined queries that alias these columns as <prefix><column>
+    ScheduleRowMapper(Cursor cursor, String prefix) {
+        idIndex = cursor.getColumnIndexOrThrow(prefix + DatabaseHelper.KEY_ID);
+        dateIndex = cursor.getColumnIndexOrThrow(prefix + DatabaseHelper.KEY_DATE);
+        epochDayIndex = cursor.getColumnIndexOrThrow(prefix + DatabaseHelper.KEY_DATE_EPOCH_DAY);
+        teacherIndex = cursor.getColumnIndexOrThrow(prefix + DatabaseHelper.KEY_TEACHER);
+        commentsIndex = cursor.getColumnIndexOrThrow(prefix + DatabaseHelper.KEY_COMMENTS);
+        yogaCourseIdIndex = cursor.getColumnIndexOrThrow(prefix + DatabaseHelper.KEY_YOGA_COURSE_ID);
+        currentEnrollmentIndex = cursor.getColumnIndexOrThrow(prefix + DatabaseHelper.KEY_CURRENT_ENROLLMENT);
+        isCancelledIndex = cursor.getColumnIndexOrThrow(prefix + DatabaseHelper.KEY_IS_CANCELLED);
+        lastModifiedIndex = cursor.getColumnIndexOrThrow(prefix + DatabaseHelper.KEY_LAST_MODIFIED);
+        isSyncedIndex = cursor.getColumnIndexOrThrow(prefix + DatabaseHelper.KEY_IS_SYNCED);
+    }
+
+    Schedule map(Cursor cursor) {
+        // Rows whose legacy text date could not be migrated have no epoch day; fall back to parsing it.
+        String date = cursor.getString(dateIndex);
+        long epochDay = cursor.isNull(epochDayIndex)
+                ? DateUtils.parseEpochDay(date)
+                : cursor.getLong(epochDayIndex);
+        return new Schedule(
+                cursor.getInt(idIndex),
+                epochDay,
+                date,
+                cursor.getString(teacherIndex),
+                cursor.getString(commentsIndex),
+                cursor.getInt(yogaCourseIdIndex),
+                cursor.getInt(currentEnrollmentIndex),
+                cursor.getInt(isCancelledIndex) == 1,
+                cursor.getLong(lastModifiedIndex),
+                cursor.getInt(isSyncedIndex) == 1);
+    }
+
+    static List<Schedule> mapAll(Cursor cursor) {
+        List<Schedule> schedules = new ArrayList<>(cursor.getCount());
+        if (cursor.moveToFirst()) {
+            ScheduleRowMapper mapper = new ScheduleRowMapper(cursor);
+            do {
+                schedules.add(mapper.map(cursor));
+            } while (cursor.moveToNext());
+        }
+        return schedules;
+    }
+}
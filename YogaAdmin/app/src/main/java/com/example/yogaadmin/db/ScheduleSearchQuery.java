@@ -0,0 +1,46 @@
+package com.example.yogaadmin.db;
+
+import com.example.yogaadmin.utils.DateUtils;
+
+// Search criteria for DatabaseHelper.searchSchedules(ScheduleSearchQuery). Every criterion
+// that is set narrows the result (they combine with AND); unset criteria are ignored.
+public class ScheduleSearchQuery {
+    private String text;                          // Full text over teacher, comments and course
+    private String teacher;                       // Teacher name, prefix-matched per word
+    private long date = DateUtils.NO_DATE;        // Exact day, as an epoch day
+    private int dayOfWeek = -1;                   // 0 = Sunday, as in DateUtils.dayOfWeek()
+    private long fromDate = DateUtils.NO_DATE;    // Inclusive lower bound, as an epoch day
+    private long toDate = DateUtils.NO_DATE;      // Inclusive upper bound, as an epoch day
+    private Boolean cancelled;                    // null matches both
+
+    public String getText() { return text; }
+    public void setText(String text) { this.text = text; }
+
+    public String getTeacher() { return teacher; }
+    public void setTeacher(String teacher) { this.teacher = teacher; }
+
+    public long getDate() { return date; }
+    public void setDate(long date) { this.date = date; }
+
+    public int getDayOfWeek() { return dayOfWeek; }
+    public void setDayOfWeek(int dayOfWeek) { this.dayOfWeek = dayOfWeek; }
+
+    public long getFromDate() { return fromDate; }
+    public long getToDate() { return toDate; }
+    public void setDateRange(long fromDate, long toDate) {
+        this.fromDate = fromDate;
+        this.toDate = toDate;
+    }
+
+    public Boolean getCancelled() { return cancelled; }
+    public void setCancelled(Boolean cancelled) { this.cancelled = cancelled; }
+
+    public boolean isEmpty() {
+        return isBlank(text) && isBlank(teacher) && date == DateUtils.NO_DATE && dayOfWeek < 0
+                && fromDate == DateUtils.NO_DATE && toDate == DateUtils.NO_DATE && cancelled == null;
+    }
+
+    private static boolean isBlank(String value) {
+        return value == null || value.trim().isEmpty();
+    }
+}
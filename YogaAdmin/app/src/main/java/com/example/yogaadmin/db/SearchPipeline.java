@@ -0,0 +1,160 @@
+package com.example.yogaadmin.db;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.example.yogaadmin.models.SearchResult;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+// Turns a stream of keystrokes into schedule searches: queries are debounced, a new query
+// cancels the one in flight (including its SQLite scan), and results for anything but the
+// latest query are dropped. Must be used from the main thread.
+public class SearchPipeline {
+    private static final String TAG = "SearchPipeline";
+    public static final long DEFAULT_DEBOUNCE_MILLIS = 300;
+
+    public interface Listener {
+        // firstPage is false for pages loaded through loadNextPage
+        void onResults(List<SearchResult> page, boolean firstPage);
+    }
+
+    private final YogaRepository repository;
+    private final int pageSize;
+    private final Listener listener;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Runnable runPendingQuery = this::runPendingQuery;
+    private long debounceMillis = DEFAULT_DEBOUNCE_MILLIS;
+
+    private ScheduleSearchQuery pendingQuery;
+    private ScheduleSearchQuery currentQuery;
+    private Future<List<SearchResult>> inFlight;
+    // Bumped whenever a query is superseded; a result from an older generation is never delivered
+    private int generation;
+
+    // Latency from dispatch to delivery on the main thread, for completed queries only
+    private int completedQueries;
+    private int cancelledQueries;
+    private long lastLatencyNanos;
+    private long maxLatencyNanos;
+    private long totalLatencyNanos;
+
+    public SearchPipeline(YogaRepository repository, int pageSize, Listener listener) {
+        this.repository = repository;
+        this.pageSize = pageSize;
+        this.listener = listener;
+    }
+
+    public void setDebounceMillis(long debounceMillis) {
+        this.debounceMillis = debounceMillis;
+    }
+
+    // Runs the query once input has been quiet for the debounce interval
+    public void submit(ScheduleSearchQuery query) {
+        schedule(query, debounceMillis);
+    }
+
+    // For discrete input such as a picked date, where there is nothing to wait for
+    public void submitNow(ScheduleSearchQuery query) {
+        schedule(query, 0);
+    }
+
+    // Loads the page after the given result for the current query; returns false when there is
+    // no current query or a search is already running
+    public boolean loadNextPage(SearchResult after) {
+        if (currentQuery == null || pendingQuery != null || inFlight != null) {
+            return false;
+        }
+        run(currentQuery, after);
+        return true;
+    }
+
+    public boolean isSearching() {
+        return pendingQuery != null || inFlight != null;
+    }
+
+    // Drops any pending or running query; call from onDestroy
+    public void cancel() {
+        generation++;
+        pendingQuery = null;
+        mainHandler.removeCallbacks(runPendingQuery);
+        cancelInFlight();
+    }
+
+    private void schedule(ScheduleSearchQuery query, long delayMillis) {
+        cancel();
+        pendingQuery = query;
+        mainHandler.postDelayed(runPendingQuery, delayMillis);
+    }
+
+    private void runPendingQuery() {
+        ScheduleSearchQuery query = pendingQuery;
+        pendingQuery = null;
+        if (query != null) {
+            currentQuery = query;
+            run(query, null);
+        }
+    }
+
+    private void run(ScheduleSearchQuery query, SearchResult after) {
+        int queryGeneration = generation;
+        long startedNanos = System.nanoTime();
+        inFlight = repository.searchSchedules(query, after, pageSize, YogaRepository.Callback.of(page -> {
+            if (queryGeneration != generation) {
+                return;
+            }
+            inFlight = null;
+            recordLatency(System.nanoTime() - startedNanos, page.size());
+            listener.onResults(page, after == null);
+        }, error -> {
+            // Lets the next scroll or keystroke search again
+            if (queryGeneration == generation) {
+                inFlight = null;
+            }
+        }));
+    }
+
+    private void cancelInFlight() {
+        if (inFlight != null) {
+            if (!inFlight.isDone()) {
+                cancelledQueries++;
+            }
+            inFlight.cancel(false);
+            inFlight = null;
+        }
+    }
+
+    private void recordLatency(long latencyNanos, int rows) {
+        completedQueries++;
+        lastLatencyNanos = latencyNanos;
+        maxLatencyNanos = Math.max(maxLatencyNanos, latencyNanos);
+        totalLatencyNanos += latencyNanos;
+        Log.d(TAG, String.format(Locale.US, "search returned %d rows in %d ms (avg %d ms, max %d ms, %d cancelled)",
+                rows, TimeUnit.NANOSECONDS.toMillis(latencyNanos), getAverageLatencyMillis(),
+                getMaxLatencyMillis(), cancelledQueries));
+    }
+
+    public int getCompletedQueries() {
+        return completedQueries;
+    }
+
+    public int getCancelledQueries() {
+        return cancelledQueries;
+    }
+
+    public long getLastLatencyMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(lastLatencyNanos);
+    }
+
+    public long getMaxLatencyMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(maxLatencyNanos);
+    }
+
+    public long getAverageLatencyMillis() {
+        return completedQueries == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(totalLatencyNanos / completedQueries);
+    }
+}
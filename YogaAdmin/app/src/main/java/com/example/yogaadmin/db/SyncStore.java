@@ -0,0 +1,26 @@
+package com.example.yogaadmin.db;
+
+import com.example.yogaadmin.models.OutboxEntry;
+import com.example.yogaadmin.models.Schedule;
+import com.example.yogaadmin.models.YogaCourse;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Future;
+
+// The local side of a sync run: the outbox to push, the rows it names, and where pulled changes
+// are merged. YogaRepository is the real one; SyncEngine only needs these calls, so it can also
+// run on a plain JVM against an in-memory store.
+public interface SyncStore {
+    Future<List<OutboxEntry>> getOutboxEntries(long afterSeq, int limit, YogaRepository.Callback<List<OutboxEntry>> callback);
+
+    Future<List<YogaCourse>> getYogaCoursesByIds(Collection<Integer> ids, YogaRepository.Callback<List<YogaCourse>> callback);
+
+    Future<List<Schedule>> getSchedulesByIds(Collection<Integer> ids, YogaRepository.Callback<List<Schedule>> callback);
+
+    Future<Integer> acknowledgeOutbox(long throughSeq, YogaRepository.Callback<Integer> callback);
+
+    Future<Long> getSyncWatermark(String table, YogaRepository.Callback<Long> callback);
+
+    Future<MergeReport> mergePulled(PulledChanges changes, YogaRepository.Callback<MergeReport> callback);
+}
@@ -0,0 +1,181 @@
+package com.example.yogaadmin.db;
+
+import java.util.AbstractMap;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+// In-memory prefix trie of distinct teacher names and how many sessions each teaches, for
+// autocomplete. Names are matched case-insensitively but suggested with their stored spelling.
+// DatabaseHelper builds it on first use and keeps it current as schedules are written.
+public class TeacherIndex {
+    // Most sessions first, then alphabetical
+    private static final Comparator<Map.Entry<String, Integer>> BY_RANK = (a, b) -> {
+        int byCount = Integer.compare(b.getValue(), a.getValue());
+        return byCount != 0 ? byCount : a.getKey().compareTo(b.getKey());
+    };
+
+    private static final class Node {
+        final Map<Character, Node> children = new HashMap<>();
+        // Spellings whose normalised form ends at this node, with their session counts
+        Map<String, Integer> names;
+        // Best-ranked names in this subtree, memoised until a write passes through the node
+        List<Map.Entry<String, Integer>> ranked;
+        int rankedLimit;
+    }
+
+    private Node root;
+    private int distinctNames;
+
+    synchronized boolean isBuilt() {
+        return root != null;
+    }
+
+    synchronized void build(Map<String, Integer> sessionCounts) {
+        root = new Node();
+        distinctNames = 0;
+        for (Map.Entry<String, Integer> entry : sessionCounts.entrySet()) {
+            adjust(entry.getKey(), entry.getValue());
+        }
+    }
+
+    // Dropped rather than patched, e.g. after a bulk sync; rebuilt on next use
+    synchronized void invalidate() {
+        root = null;
+        distinctNames = 0;
+    }
+
+    synchronized void add(String teacher) {
+        if (root != null) {
+            adjust(teacher, 1);
+        }
+    }
+
+    synchronized void remove(String teacher) {
+        if (root != null) {
+            adjust(teacher, -1);
+        }
+    }
+
+    // Up to limit names starting with prefix, most-taught first
+    public synchronized List<String> suggest(String prefix, int limit) {
+        String key = normalise(prefix);
+        if (root == null || key == null || limit <= 0) {
+            return Collections.emptyList();
+        }
+        Node node = find(key);
+        if (node == null) {
+            return Collections.emptyList();
+        }
+        if (node.ranked == null || node.rankedLimit < limit) {
+            node.ranked = rank(node, limit);
+            node.rankedLimit = limit;
+        }
+
+        int count = Math.min(limit, node.ranked.size());
+        List<String> suggestions = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            suggestions.add(node.ranked.get(i).getKey());
+        }
+        return suggestions;
+    }
+
+    private static List<Map.Entry<String, Integer>> rank(Node node, int limit) {
+        // Keep only the best `limit` names while walking the subtree: the head is the weakest
+        PriorityQueue<Map.Entry<String, Integer>> best = new PriorityQueue<>(limit + 1, BY_RANK.reversed());
+        Deque<Node> pending = new ArrayDeque<>();
+        pending.push(node);
+        while (!pending.isEmpty()) {
+            Node current = pending.pop();
+            if (current.names != null) {
+                for (Map.Entry<String, Integer> name : current.names.entrySet()) {
+                    best.offer(new AbstractMap.SimpleImmutableEntry<>(name));
+                    if (best.size() > limit) {
+                        best.poll();
+                    }
+                }
+            }
+            for (Node child : current.children.values()) {
+                pending.push(child);
+            }
+        }
+
+        List<Map.Entry<String, Integer>> ranked = new ArrayList<>(best);
+        Collections.sort(ranked, BY_RANK);
+        return ranked;
+    }
+
+    public synchronized int getSessionCount(String teacher) {
+        String key = normalise(teacher);
+        Node node = key == null ? null : find(key);
+        if (node == null || node.names == null) {
+            return 0;
+        }
+        Integer count = node.names.get(teacher.trim());
+        return count == null ? 0 : count;
+    }
+
+    public synchronized int size() {
+        return distinctNames;
+    }
+
+    private void adjust(String teacher, int delta) {
+        String key = normalise(teacher);
+        if (key == null) {
+            return;
+        }
+        String name = teacher.trim();
+        Node node = root;
+        node.ranked = null;
+        for (int i = 0; i < key.length(); i++) {
+            Node child = node.children.get(key.charAt(i));
+            if (child == null) {
+                if (delta < 0) {
+                    return;
+                }
+                child = new Node();
+                node.children.put(key.charAt(i), child);
+            }
+            node = child;
+            node.ranked = null;
+        }
+        if (node.names == null) {
+            node.names = new HashMap<>();
+        }
+        Integer current = node.names.get(name);
+        int updated = (current == null ? 0 : current) + delta;
+        if (updated > 0) {
+            if (current == null) {
+                distinctNames++;
+            }
+            node.names.put(name, updated);
+        } else if (current != null) {
+            // Emptied nodes are left in place; they cost little and a rebuild drops them
+            node.names.remove(name);
+            distinctNames--;
+        }
+    }
+
+    private Node find(String key) {
+        Node node = root;
+        for (int i = 0; i < key.length() && node != null; i++) {
+            node = node.children.get(key.charAt(i));
+        }
+        return node;
+    }
+
+    private static String normalise(String teacher) {
+        if (teacher == null) {
+            return null;
+        }
+        String key = teacher.trim().toLowerCase(Locale.ROOT);
+        return key.isEmpty() ? null : key;
+    }
+}
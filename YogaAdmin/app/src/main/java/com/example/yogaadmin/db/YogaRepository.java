@@ -0,0 +1,300 @@
+package com.example.yogaadmin.db;
+
+import android.os.CancellationSignal;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.annotation.WorkerThread;
+
+import com.example.yogaadmin.models.Booking;
+import com.example.yogaadmin.models.CourseSummary;
+import com.example.yogaadmin.models.Customer;
+import com.example.yogaadmin.models.OutboxEntry;
+import com.example.yogaadmin.models.Schedule;
+import com.example.yogaadmin.models.SearchResult;
+import com.example.yogaadmin.models.YogaCourse;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+// Runs DatabaseHelper calls off the main thread: reads on a small pool (WAL lets them run
+// alongside a write), writes on a single thread so they apply in submission order. Results are
+// delivered to the callback on the main thread unless the returned Future was cancelled first.
+public class YogaRepository implements SyncStore {
+    private static final String TAG = "YogaRepository";
+    private static final int READER_THREADS = 3;
+
+    private final DatabaseHelper dbHelper;
+    private final ExecutorService readExecutor;
+    private final ExecutorService writeExecutor;
+    private final Handler mainHandler;
+
+    public interface Callback<T> {
+        void onResult(T result);
+
+        default void onError(Throwable error) {
+            Log.e(TAG, "Database task failed", error);
+        }
+
+        // For callers that must undo state on failure too, e.g. clear an in-flight marker; the
+        // failure is still logged
+        static <T> Callback<T> of(Consumer<T> onResult, Consumer<Throwable> onError) {
+            return new Callback<T>() {
+                @Override
+                public void onResult(T result) {
+                    onResult.accept(result);
+                }
+
+                @Override
+                public void onError(Throwable error) {
+                    Log.e(TAG, "Database task failed", error);
+                    onError.accept(error);
+                }
+            };
+        }
+    }
+
+    public YogaRepository(DatabaseHelper dbHelper) {
+        this.dbHelper = dbHelper;
+        this.readExecutor = Executors.newFixedThreadPool(READER_THREADS, namedThreads("yoga-db-read"));
+        this.writeExecutor = Executors.newSingleThreadExecutor(namedThreads("yoga-db-write"));
+        this.mainHandler = new Handler(Looper.getMainLooper());
+    }
+
+    public ChangeNotifier getChangeNotifier() {
+        return dbHelper.getChangeNotifier();
+    }
+
+    // YogaCourse operations
+    public Future<List<YogaCourse>> getYogaCoursesPage(int afterId, int limit, Callback<List<YogaCourse>> callback) {
+        return read(() -> dbHelper.getYogaCoursesPage(afterId, limit), callback);
+    }
+
+    public Future<List<CourseSummary>> getCourseSummariesPage(int afterId, int limit,
+                                                              Callback<List<CourseSummary>> callback) {
+        return read(() -> dbHelper.getCourseSummariesPage(afterId, limit), callback);
+    }
+
+    public Future<List<CourseSummary>> getCourseSummariesByIds(Collection<Integer> ids,
+                                                               Callback<List<CourseSummary>> callback) {
+        return read(() -> dbHelper.getCourseSummariesByIds(ids), callback);
+    }
+
+    public Future<YogaCourse> getYogaCourse(int id, Callback<YogaCourse> callback) {
+        return read(() -> dbHelper.getYogaCourse(id), callback);
+    }
+
+    @Override
+    public Future<List<YogaCourse>> getYogaCoursesByIds(Collection<Integer> ids, Callback<List<YogaCourse>> callback) {
+        return read(() -> dbHelper.getYogaCoursesByIds(ids), callback);
+    }
+
+    public Future<Long> addYogaCourse(YogaCourse course, Callback<Long> callback) {
+        return write(() -> dbHelper.addYogaCourse(course), callback);
+    }
+
+    public Future<Integer> updateYogaCourse(YogaCourse course, Callback<Integer> callback) {
+        return write(() -> dbHelper.updateYogaCourse(course), callback);
+    }
+
+    public Future<Void> deleteYogaCourse(int courseId, Callback<Void> callback) {
+        return write(() -> {
+            dbHelper.deleteYogaCourse(courseId);
+            return null;
+        }, callback);
+    }
+
+    // Schedule operations
+    public Future<List<Schedule>> getSchedulesForCoursePage(int courseId, Schedule after, int limit,
+                                                            Callback<List<Schedule>> callback) {
+        return read(() -> dbHelper.getSchedulesForCoursePage(courseId, after, limit), callback);
+    }
+
+    public Future<Schedule> getSchedule(int id, Callback<Schedule> callback) {
+        return read(() -> dbHelper.getSchedule(id), callback);
+    }
+
+    @Override
+    public Future<List<Schedule>> getSchedulesByIds(Collection<Integer> ids, Callback<List<Schedule>> callback) {
+        return read(() -> dbHelper.getSchedulesByIds(ids), callback);
+    }
+
+    public Future<Long> addSchedule(Schedule schedule, Callback<Long> callback) {
+        return write(() -> dbHelper.addSchedule(schedule), callback);
+    }
+
+    public Future<Integer> updateSchedule(Schedule schedule, Callback<Integer> callback) {
+        return write(() -> dbHelper.updateSchedule(schedule), callback);
+    }
+
+    public Future<Void> deleteSchedule(int scheduleId, Callback<Void> callback) {
+        return write(() -> {
+            dbHelper.deleteSchedule(scheduleId);
+            return null;
+        }, callback);
+    }
+
+    public Future<Integer> tryEnroll(int scheduleId, int seats, Callback<Integer> callback) {
+        return write(() -> dbHelper.tryEnroll(scheduleId, seats), callback);
+    }
+
+    public Future<Integer> releaseSeats(int scheduleId, int seats, Callback<Integer> callback) {
+        return write(() -> dbHelper.releaseSeats(scheduleId, seats), callback);
+    }
+
+    // Customer and booking operations
+    public Future<Long> addCustomer(Customer customer, Callback<Long> callback) {
+        return write(() -> dbHelper.addCustomer(customer), callback);
+    }
+
+    public Future<Long> bookSession(int customerId, int scheduleId, Callback<Long> callback) {
+        return write(() -> dbHelper.bookSession(customerId, scheduleId), callback);
+    }
+
+    public Future<Boolean> cancelBooking(int bookingId, Callback<Boolean> callback) {
+        return write(() -> dbHelper.cancelBooking(bookingId), callback);
+    }
+
+    public Future<List<Customer>> getRoster(int scheduleId, Callback<List<Customer>> callback) {
+        return read(() -> dbHelper.getRoster(scheduleId), callback);
+    }
+
+    public Future<List<Booking>> getBookingsForCustomer(int customerId, Callback<List<Booking>> callback) {
+        return read(() -> dbHelper.getBookingsForCustomer(customerId), callback);
+    }
+
+    public Future<Integer> bulkImportBookings(Collection<Booking> bookings, Callback<Integer> callback) {
+        return write(() -> dbHelper.bulkImportBookings(bookings), callback);
+    }
+
+    public Future<Integer> reconcileEnrollment(Callback<Integer> callback) {
+        return write(dbHelper::reconcileEnrollment, callback);
+    }
+
+    // Cancelling the returned Future also aborts the SQLite query if it is already running
+    public Future<List<SearchResult>> searchSchedules(ScheduleSearchQuery query, SearchResult after, int limit,
+                                                      Callback<List<SearchResult>> callback) {
+        CancellationSignal signal = new CancellationSignal();
+        return submit(readExecutor, () -> dbHelper.searchSchedules(query, after, limit, signal), callback, signal);
+    }
+
+    // The only blocking method here: the first call builds the teacher index from the database,
+    // so never call it on the main thread (an autocomplete Filter already runs on its own worker)
+    @WorkerThread
+    public List<String> suggestTeachers(String prefix, int limit) {
+        return dbHelper.getTeacherIndex().suggest(prefix, limit);
+    }
+
+    // Sync operations
+    @Override
+    public Future<List<OutboxEntry>> getOutboxEntries(long afterSeq, int limit,
+                                                      Callback<List<OutboxEntry>> callback) {
+        return read(() -> dbHelper.getOutboxEntries(afterSeq, limit), callback);
+    }
+
+    @Override
+    public Future<Integer> acknowledgeOutbox(long throughSeq, Callback<Integer> callback) {
+        return write(() -> dbHelper.acknowledgeOutbox(throughSeq), callback);
+    }
+
+    @Override
+    public Future<Long> getSyncWatermark(String table, Callback<Long> callback) {
+        return read(() -> dbHelper.getSyncWatermark(table), callback);
+    }
+
+    @Override
+    public Future<MergeReport> mergePulled(PulledChanges changes, Callback<MergeReport> callback) {
+        return write(() -> dbHelper.mergePulled(changes), callback);
+    }
+
+    public Future<Integer> bulkUpsertCourses(Collection<YogaCourse> courses, Callback<Integer> callback) {
+        return write(() -> dbHelper.bulkUpsertCourses(courses), callback);
+    }
+
+    public Future<Integer> bulkUpsertSchedules(Collection<Schedule> schedules, Callback<Integer> callback) {
+        return write(() -> dbHelper.bulkUpsertSchedules(schedules), callback);
+    }
+
+    public Future<Void> resetDatabase(Callback<Void> callback) {
+        return write(() -> {
+            dbHelper.resetDatabase();
+            return null;
+        }, callback);
+    }
+
+    private <T> Future<T> read(Callable<T> work, Callback<T> callback) {
+        return submit(readExecutor, work, callback, null);
+    }
+
+    private <T> Future<T> write(Callable<T> work, Callback<T> callback) {
+        return submit(writeExecutor, work, callback, null);
+    }
+
+    private <T> Future<T> submit(ExecutorService executor, Callable<T> work, Callback<T> callback,
+                                 CancellationSignal signal) {
+        // Fire-and-forget writes still get the default error logging
+        DbTask<T> task = new DbTask<>(work, callback != null ? callback : result -> { }, signal);
+        executor.execute(task);
+        return task;
+    }
+
+    private static ThreadFactory namedThreads(String prefix) {
+        AtomicInteger count = new AtomicInteger();
+        return runnable -> new Thread(runnable, prefix + "-" + count.incrementAndGet());
+    }
+
+    private final class DbTask<T> extends FutureTask<T> {
+        private final Callback<T> callback;
+        private final CancellationSignal signal;
+        private volatile boolean abandoned;
+
+        DbTask(Callable<T> work, Callback<T> callback, CancellationSignal signal) {
+            super(work);
+            this.callback = callback;
+            this.signal = signal;
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            // Also covers a result that is already waiting in the main-thread queue
+            abandoned = true;
+            if (signal != null) {
+                signal.cancel();
+            }
+            return super.cancel(mayInterruptIfRunning);
+        }
+
+        @Override
+        protected void done() {
+            if (isCancelled()) {
+                return;
+            }
+            mainHandler.post(() -> {
+                if (abandoned) {
+                    return;
+                }
+                T result;
+                try {
+                    result = get();
+                } catch (ExecutionException e) {
+                    callback.onError(e.getCause());
+                    return;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                callback.onResult(result);
+            });
+        }
+    }
+}
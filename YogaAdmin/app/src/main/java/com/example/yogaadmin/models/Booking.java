@@ -0,0 +1,64 @@
+package com.example.yogaadmin.models;
+
+// One customer's place on one scheduled session. Booked and attended places hold a seat;
+// cancelled ones are kept for the customer's history.
+public class Booking {
+    public static final String STATUS_BOOKED = "booked";
+    public static final String STATUS_ATTENDED = "attended";
+    public static final String STATUS_CANCELLED = "cancelled";
+
+    private int id;
+    private int customerId;     // Foreign key to Customer
+    private int scheduleId;     // Foreign key to Schedule
+    private String status;      // One of the STATUS_ values
+    private long createdAt;
+    private long lastModified;
+
+    public Booking() {
+        this.status = STATUS_BOOKED;
+        this.createdAt = System.currentTimeMillis();
+        this.lastModified = createdAt;
+    }
+
+    public Booking(int customerId, int scheduleId) {
+        this();
+        this.customerId = customerId;
+        this.scheduleId = scheduleId;
+    }
+
+    // Hydration constructor for rows read back from storage or imported from the cloud
+    public Booking(int id, int customerId, int scheduleId, String status, long createdAt, long lastModified) {
+        this.id = id;
+        this.customerId = customerId;
+        this.scheduleId = scheduleId;
+        this.status = status;
+        this.createdAt = createdAt;
+        this.lastModified = lastModified;
+    }
+
+    // Getters and Setters
+    public int getId() { return id; }
+    public void setId(int id) { this.id = id; }
+
+    public int getCustomerId() { return customerId; }
+    public void setCustomerId(int customerId) { this.customerId = customerId; }
+
+    public int getScheduleId() { return scheduleId; }
+    public void setScheduleId(int scheduleId) { this.scheduleId = scheduleId; }
+
+    public String getStatus() { return status; }
+    public void setStatus(String status) {
+        this.status = status;
+        this.lastModified = System.currentTimeMillis();
+    }
+
+    public long getCreatedAt() { return createdAt; }
+    public void setCreatedAt(long createdAt) { this.createdAt = createdAt; }
+
+    public long getLastModified() { return lastModified; }
+    public void setLastModified(long lastModified) { this.lastModified = lastModified; }
+
+    public boolean holdsSeat() {
+        return !STATUS_CANCELLED.equals(status);
+    }
+}
@@ -0,0 +1,45 @@
+package com.example.yogaadmin.models;
+
+import com.example.yogaadmin.utils.DateUtils;
+
+// A course together with figures aggregated over its schedules, for the overview list
+public class CourseSummary {
+    private final YogaCourse course;
+    private final int scheduleCount;
+    private final long nextSessionEpochDay;  // DateUtils.NO_DATE when nothing is upcoming
+    private final int cancelledCount;
+    private final double averageFillRate;    // current_enrollment / capacity, 0..1; NaN with no data
+
+    public CourseSummary(YogaCourse course, int scheduleCount, long nextSessionEpochDay,
+                         int cancelledCount, double averageFillRate) {
+        this.course = course;
+        this.scheduleCount = scheduleCount;
+        this.nextSessionEpochDay = nextSessionEpochDay;
+        this.cancelledCount = cancelledCount;
+        this.averageFillRate = averageFillRate;
+    }
+
+    public YogaCourse getCourse() {
+        return course;
+    }
+
+    public int getScheduleCount() {
+        return scheduleCount;
+    }
+
+    public long getNextSessionEpochDay() {
+        return nextSessionEpochDay;
+    }
+
+    public boolean hasNextSession() {
+        return nextSessionEpochDay != DateUtils.NO_DATE;
+    }
+
+    public int getCancelledCount() {
+        return cancelledCount;
+    }
+
+    public double getAverageFillRate() {
+        return averageFillRate;
+    }
+}
@@ -0,0 +1,44 @@
+package com.example.yogaadmin.models;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+// One local change waiting to be pushed to the cloud, in the order it was made. Entries are
+// written by database triggers and removed once the cloud has acknowledged them.
+public class OutboxEntry {
+    public static final String OP_INSERT = "insert";
+    public static final String OP_UPDATE = "update";
+    public static final String OP_DELETE = "delete";
+
+    private final long seq;
+    private final String entity;        // Table the row lives in
+    private final int entityId;
+    private final String operation;     // One of the OP_ values
+    private final String changedFields; // Comma-separated columns; null when every column counts
+    private final long createdAt;
+
+    public OutboxEntry(long seq, String entity, int entityId, String operation, String changedFields,
+                       long createdAt) {
+        this.seq = seq;
+        this.entity = entity;
+        this.entityId = entityId;
+        this.operation = operation;
+        this.changedFields = changedFields;
+        this.createdAt = createdAt;
+    }
+
+    public long getSeq() { return seq; }
+    public String getEntity() { return entity; }
+    public int getEntityId() { return entityId; }
+    public String getOperation() { return operation; }
+    public long getCreatedAt() { return createdAt; }
+
+    // Empty for inserts and deletes, which concern the whole row
+    public List<String> getChangedFields() {
+        if (changedFields == null || changedFields.isEmpty()) {
+            return Collections.emptyList();
+        }
+        return Arrays.asList(changedFields.split(","));
+    }
+}
@@ -1,14 +1,15 @@
 package com.example.yogaadmin.models;
 
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
+import com.example.yogaadmin.utils.DateUtils;
+
 import java.util.Calendar;
-import java.util.Date;
 import java.util.Locale;
 
 public class Schedule {
     private int id;
-    private String date;        // Required - format: dd/MM/yyyy
+    private long epochDay = DateUtils.NO_DATE; // Required - stored as days since 1970-01-01
+    private String date;        // dd/MM/yyyy view of epochDay, formatted on first use; the stored
+                                // text itself when it can't be parsed into an epoch day
     private String teacher;     // Required
     private String comments;    // Optional
     private int yogaCourseId;   // Foreign key to YogaCourse
@@ -17,8 +18,6 @@ public class Schedule {
     private long lastModified;     // For cloud sync
     private boolean isSynced;      // For cloud sync
 
-    private static final SimpleDateFormat DATE_FORMAT = new SimpleDateFormat("dd/MM/yyyy", Locale.UK);
-
     public Schedule() {
         this.lastModified = Calendar.getInstance().getTimeInMillis();
         this.isSynced = false;
@@ -29,18 +28,56 @@ public class Schedule {
     public Schedule(String date, String teacher, String comments, int yogaCourseId) {
         this();
         this.date = date;
+        this.epochDay = DateUtils.parseEpochDay(date);
         this.teacher = teacher;
         this.comments = comments;
         this.yogaCourseId = yogaCourseId;
     }
 
+    // Hydration constructor for rows read back from storage: keeps the stored
+    // lastModified/isSynced values instead of marking the schedule as modified. The date text is
+    // only kept when there is no epoch day to format it from, so a legacy row whose text can't be
+    // parsed still writes it back rather than NULL.
+    public Schedule(int id, long epochDay, String date, String teacher, String comments, int yogaCourseId,
+                    int currentEnrollment, boolean isCancelled, long lastModified, boolean isSynced) {
+        this.id = id;
+        this.epochDay = epochDay;
+        this.date = epochDay == DateUtils.NO_DATE ? date : null;
+        this.teacher = teacher;
+        this.comments = comments;
+        this.yogaCourseId = yogaCourseId;
+        this.currentEnrollment = currentEnrollment;
+        this.isCancelled = isCancelled;
+        this.lastModified = lastModified;
+        this.isSynced = isSynced;
+    }
+
+    // Copy constructor; keeps the copy's lastModified/isSynced identical to the original.
+    public Schedule(Schedule other) {
+        this(other.id, other.epochDay, other.date, other.teacher, other.comments, other.yogaCourseId,
+                other.currentEnrollment, other.isCancelled, other.lastModified, other.isSynced);
+    }
+
     // Getters and Setters
     public int getId() { return id; }
     public void setId(int id) { this.id = id; }
     
-    public String getDate() { return date; }
+    public String getDate() {
+        if (date == null && epochDay != DateUtils.NO_DATE) {
+            date = DateUtils.formatEpochDay(epochDay);
+        }
+        return date;
+    }
     public void setDate(String date) { 
         this.date = date;
+        this.epochDay = DateUtils.parseEpochDay(date);
+        updateLastModified();
+    }
+
+    public long getEpochDay() { return epochDay; }
+    public void setEpochDay(long epochDay) {
+        this.epochDay = epochDay;
+        this.date = null;
         updateLastModified();
     }
     
@@ -81,31 +118,20 @@ public class Schedule {
     public void setSynced(boolean synced) { this.isSynced = synced; }
 
     private void updateLastModified() {
-        this.lastModified = Calendar.getInstance().getTimeInMillis();
+        this.lastModified = System.currentTimeMillis();
         this.isSynced = false;
     }
 
     // Utility methods
     public String getDayOfWeek() {
-        try {
-            Date scheduleDate = DATE_FORMAT.parse(date);
-            Calendar cal = Calendar.getInstance();
-            cal.setTime(scheduleDate);
-            
-            String[] days = {"", "Sunday", "Monday", "Tuesday", "Wednesday", "Thursday", "Friday", "Saturday"};
-            return days[cal.get(Calendar.DAY_OF_WEEK)];
-        } catch (ParseException e) {
+        if (epochDay == DateUtils.NO_DATE) {
             return null;
         }
+        return DateUtils.dayName(DateUtils.dayOfWeek(epochDay));
     }
 
     public boolean isValidDate() {
-        try {
-            DATE_FORMAT.parse(date);
-            return true;
-        } catch (ParseException e) {
-            return false;
-        }
+        return epochDay != DateUtils.NO_DATE;
     }
 
     public static String formatDate(int day, int month, int year) {
@@ -0,0 +1,29 @@
+package com.example.yogaadmin.models;
+
+public class SearchResult {
+    private final YogaCourse course;
+    private final Schedule schedule;
+    private final int rank;     // Search relevance tier, lower is better
+
+    public SearchResult(YogaCourse course, Schedule schedule) {
+        this(course, schedule, 0);
+    }
+
+    public SearchResult(YogaCourse course, Schedule schedule, int rank) {
+        this.course = course;
+        this.schedule = schedule;
+        this.rank = rank;
+    }
+
+    public YogaCourse getCourse() {
+        return course;
+    }
+
+    public Schedule getSchedule() {
+        return schedule;
+    }
+
+    public int getRank() {
+        return rank;
+    }
+}
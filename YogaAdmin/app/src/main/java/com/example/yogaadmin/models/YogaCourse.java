@@ -40,6 +40,33 @@ public class YogaCourse {
         this.isSynced = false;
     }
 
+    // Hydration constructor for rows read back from storage: keeps the stored
+    // lastModified/isSynced values instead of marking the course as modified.
+    public YogaCourse(int id, String dayOfWeek, String time, float price, int capacity,
+                      int duration, String type, String description, boolean isActive,
+                      String difficulty, String equipment, long lastModified, boolean isSynced) {
+        this.id = id;
+        this.dayOfWeek = dayOfWeek;
+        this.time = time;
+        this.price = price;
+        this.capacity = capacity;
+        this.duration = duration;
+        this.type = type;
+        this.description = description;
+        this.isActive = isActive;
+        this.difficulty = difficulty;
+        this.equipment = equipment;
+        this.lastModified = lastModified;
+        this.isSynced = isSynced;
+    }
+
+    // Copy constructor; keeps the copy's lastModified/isSynced identical to the original.
+    public YogaCourse(YogaCourse other) {
+        this(other.id, other.dayOfWeek, other.time, other.price, other.capacity, other.duration,
+                other.type, other.description, other.isActive, other.difficulty, other.equipment,
+                other.lastModified, other.isSynced);
+    }
+
     // Getters and Setters
     public int getId() { return id; }
     public void setId(int id) { this.id = id; }
@@ -111,7 +138,7 @@ public class YogaCourse {
     public void setSynced(boolean synced) { this.isSynced = synced; }
 
     private void updateLastModified() {
-        this.lastModified = Calendar.getInstance().getTimeInMillis();
+        this.lastModified = System.currentTimeMillis();
         this.isSynced = false;
     }
 }
\ No newline at end of file
@@ -0,0 +1,88 @@
+package com.example.yogaadmin.sync;
+
+import androidx.annotation.NonNull;
+
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.FirebaseDatabase;
+import com.google.firebase.database.Query;
+import com.google.firebase.database.ServerValue;
+import com.google.firebase.database.ValueEventListener;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// SyncTransport backed by the Firebase Realtime Database. Callbacks arrive on the main thread.
+public class FirebaseTransport implements SyncTransport {
+    private final DatabaseReference database;
+
+    public FirebaseTransport() {
+        this(FirebaseDatabase.getInstance().getReference());
+    }
+
+    public FirebaseTransport(DatabaseReference database) {
+        this.database = database;
+    }
+
+    // One multi-path updateChildren, which the server applies atomically
+    @Override
+    public void putBatch(Map<String, Object> updates, Callback<Void> callback) {
+        database.updateChildren(updates, (error, ref) -> complete(error, callback));
+    }
+
+    @Override
+    public Object serverTimestamp() {
+        return ServerValue.TIMESTAMP;
+    }
+
+    // Needs ".indexOn": "serverModified" on the node in the database rules. The ranged query
+    // leaves out records that have no serverModified, so a read from 0 fetches the whole node.
+    @Override
+    public void getChangedSince(String node, long since, Callback<Map<String, Map<String, Object>>> callback) {
+        Query query = since <= 0 ? database.child(node)
+                : database.child(node).orderByChild(SERVER_MODIFIED_KEY).startAt(since);
+        query.addListenerForSingleValueEvent(new ValueEventListener() {
+            @Override
+            public void onDataChange(@NonNull DataSnapshot snapshot) {
+                Map<String, Map<String, Object>> records = new LinkedHashMap<>();
+                for (DataSnapshot child : snapshot.getChildren()) {
+                    Object value = child.getValue();
+                    if (value instanceof Map) {
+                        records.put(child.getKey(), toRecord((Map<?, ?>) value));
+                    }
+                }
+                callback.onSuccess(records);
+            }
+
+            @Override
+            public void onCancelled(@NonNull DatabaseError error) {
+                callback.onFailure(error.getMessage());
+            }
+        });
+    }
+
+    @Override
+    public void delete(String node, String key, Callback<Void> callback) {
+        Map<String, Object> updates = new HashMap<>();
+        updates.put(node + "/" + key, null);
+        putBatch(updates, callback);
+    }
+
+    private static Map<String, Object> toRecord(Map<?, ?> value) {
+        Map<String, Object> record = new LinkedHashMap<>();
+        for (Map.Entry<?, ?> field : value.entrySet()) {
+            record.put(String.valueOf(field.getKey()), field.getValue());
+        }
+        return record;
+    }
+
+    private static void complete(DatabaseError error, Callback<Void> callback) {
+        if (error != null) {
+            callback.onFailure(error.getMessage());
+        } else {
+            callback.onSuccess(null);
+        }
+    }
+}
@@ -0,0 +1,246 @@
+package com.example.yogaadmin.sync;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// SyncTransport that keeps records in process, for measuring sync without a backend. Latency
+// and failures can be injected. A request takes effect when it is made; its callback is handed
+// to the callback executor once the latency has passed, in request order. Plain Java, so it
+// also runs on a JVM without Android.
+public class InMemoryTransport implements SyncTransport {
+    // Stands in for the server's clock in a write, as ServerValue.TIMESTAMP does for Firebase
+    private static final Object SERVER_TIMESTAMP = new Object();
+
+    private final Executor callbackExecutor;
+    private final Map<String, Map<String, Map<String, Object>>> nodes = new HashMap<>();
+    private ScheduledExecutorService delayExecutor;
+    private Random random = new Random();
+    private long latencyMillis;
+    private double failureRate;
+    private int failuresPending;
+    private int requestCount;
+    private long serverClock;
+
+    // Use new Handler(Looper.getMainLooper())::post to drive FirebaseSync, or Runnable::run to
+    // get callbacks on the delay thread (or inline when there is no latency)
+    public InMemoryTransport(Executor callbackExecutor) {
+        this.callbackExecutor = callbackExecutor;
+    }
+
+    // Round trip added to every request
+    public synchronized void setLatency(long latencyMillis) {
+        if (latencyMillis < 0) {
+            throw new IllegalArgumentException("latencyMillis must not be negative: " + latencyMillis);
+        }
+        this.latencyMillis = latencyMillis;
+    }
+
+    // Share of requests that fail at random; seed makes a run repeatable
+    public synchronized void setFailureRate(double failureRate, long seed) {
+        if (failureRate < 0 || failureRate > 1) {
+            throw new IllegalArgumentException("failureRate must be between 0 and 1: " + failureRate);
+        }
+        this.failureRate = failureRate;
+        this.random = new Random(seed);
+    }
+
+    // The next count requests fail whatever the failure rate
+    public synchronized void failNext(int count) {
+        failuresPending = count;
+    }
+
+    @Override
+    public void putBatch(Map<String, Object> updates, Callback<Void> callback) {
+        String error;
+        synchronized (this) {
+            error = admit();
+            if (error == null) {
+                error = apply(updates);
+            }
+        }
+        deliver(callback, null, error);
+    }
+
+    @Override
+    public Object serverTimestamp() {
+        return SERVER_TIMESTAMP;
+    }
+
+    @Override
+    public void getChangedSince(String node, long since, Callback<Map<String, Map<String, Object>>> callback) {
+        String error;
+        Map<String, Map<String, Object>> records = new LinkedHashMap<>();
+        synchronized (this) {
+            error = admit();
+            if (error == null) {
+                List<Map.Entry<String, Map<String, Object>>> matches = new ArrayList<>();
+                Map<String, Map<String, Object>> stored = nodes.get(node);
+                if (stored != null) {
+                    for (Map.Entry<String, Map<String, Object>> record : stored.entrySet()) {
+                        if (since <= 0 || serverModified(record.getValue()) >= since) {
+                            matches.add(record);
+                        }
+                    }
+                }
+                // Same order as an orderByChild query: by serverModified, then by key
+                matches.sort((a, b) -> {
+                    int byTime = Long.compare(serverModified(a.getValue()), serverModified(b.getValue()));
+                    return byTime != 0 ? byTime : a.getKey().compareTo(b.getKey());
+                });
+                for (Map.Entry<String, Map<String, Object>> match : matches) {
+                    // Copies, so the caller can't reach into the store
+                    records.put(match.getKey(), new HashMap<>(match.getValue()));
+                }
+            }
+        }
+        deliver(callback, error == null ? records : null, error);
+    }
+
+    @Override
+    public void delete(String node, String key, Callback<Void> callback) {
+        Map<String, Object> updates = new HashMap<>();
+        updates.put(node + "/" + key, null);
+        putBatch(updates, callback);
+    }
+
+    // Copy of one record, or null when it doesn't exist
+    public synchronized Map<String, Object> getRecord(String node, String key) {
+        Map<String, Map<String, Object>> stored = nodes.get(node);
+        Map<String, Object> record = stored == null ? null : stored.get(key);
+        return record == null ? null : new HashMap<>(record);
+    }
+
+    public synchronized int getRecordCount(String node) {
+        Map<String, Map<String, Object>> stored = nodes.get(node);
+        return stored == null ? 0 : stored.size();
+    }
+
+    // Requests made so far, failed ones included
+    public synchronized int getRequestCount() {
+        return requestCount;
+    }
+
+    private String admit() {
+        requestCount++;
+        if (failuresPending > 0) {
+            failuresPending--;
+            return "Injected failure";
+        }
+        if (failureRate > 0 && random.nextDouble() < failureRate) {
+            return "Injected failure";
+        }
+        return null;
+    }
+
+    // All paths are checked before anything is written, so a bad batch changes nothing. Every
+    // server timestamp in one batch gets the same value, which never goes backwards.
+    private String apply(Map<String, Object> updates) {
+        for (Map.Entry<String, Object> update : updates.entrySet()) {
+            String[] segments = update.getKey().split("/");
+            Object value = update.getValue();
+            if (segments.length > 3 || update.getKey().isEmpty()) {
+                return "Unsupported path: " + update.getKey();
+            }
+            if (segments.length == 1 && value != null) {
+                return "Only a removal can target a whole node: " + update.getKey();
+            }
+            if (segments.length == 2 && value != null && !(value instanceof Map)) {
+                return "Record value must be a map: " + update.getKey();
+            }
+        }
+        serverClock = Math.max(serverClock, System.currentTimeMillis());
+        for (Map.Entry<String, Object> update : updates.entrySet()) {
+            String[] segments = update.getKey().split("/");
+            Object value = stamp(update.getValue());
+            if (segments.length == 1) {
+                nodes.remove(segments[0]);
+                continue;
+            }
+            Map<String, Map<String, Object>> stored = nodes.get(segments[0]);
+            if (stored == null) {
+                if (value == null) {
+                    continue;
+                }
+                stored = new HashMap<>();
+                nodes.put(segments[0], stored);
+            }
+            if (segments.length == 2) {
+                if (value == null) {
+                    stored.remove(segments[1]);
+                } else {
+                    stored.put(segments[1], toRecord((Map<?, ?>) value));
+                }
+                continue;
+            }
+            Map<String, Object> record = stored.get(segments[1]);
+            if (value == null) {
+                if (record != null) {
+                    record.remove(segments[2]);
+                    if (record.isEmpty()) {
+                        stored.remove(segments[1]);
+                    }
+                }
+            } else {
+                if (record == null) {
+                    record = new HashMap<>();
+                    stored.put(segments[1], record);
+                }
+                record.put(segments[2], value);
+            }
+        }
+        return null;
+    }
+
+    private <T> void deliver(Callback<T> callback, T result, String error) {
+        Runnable completion = () -> callbackExecutor.execute(() -> {
+            if (error != null) {
+                callback.onFailure(error);
+            } else {
+                callback.onSuccess(result);
+            }
+        });
+        long latency;
+        synchronized (this) {
+            latency = latencyMillis;
+            if (latency > 0 && delayExecutor == null) {
+                // One thread keeps completions in request order
+                delayExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                    Thread thread = new Thread(runnable, "in-memory-transport");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+            }
+        }
+        if (latency > 0) {
+            delayExecutor.schedule(completion, latency, TimeUnit.MILLISECONDS);
+        } else {
+            completion.run();
+        }
+    }
+
+    private Object stamp(Object value) {
+        return value == SERVER_TIMESTAMP ? serverClock : value;
+    }
+
+    private Map<String, Object> toRecord(Map<?, ?> value) {
+        Map<String, Object> record = new HashMap<>();
+        for (Map.Entry<?, ?> field : value.entrySet()) {
+            record.put(String.valueOf(field.getKey()), stamp(field.getValue()));
+        }
+        return record;
+    }
+
+    // Records written without one sort first, as a missing child does in Firebase
+    private static long serverModified(Map<String, Object> record) {
+        Object value = record.get(SERVER_MODIFIED_KEY);
+        return value instanceof Number ? ((Number) value).longValue() : 0;
+    }
+}
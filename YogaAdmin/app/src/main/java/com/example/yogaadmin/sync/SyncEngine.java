@@ -0,0 +1,459 @@
+package com.example.yogaadmin.sync;
+
+import com.example.yogaadmin.db.ChangeNotifier;
+import com.example.yogaadmin.db.PulledChanges;
+import com.example.yogaadmin.db.SyncStore;
+import com.example.yogaadmin.db.YogaRepository;
+import com.example.yogaadmin.models.OutboxEntry;
+import com.example.yogaadmin.models.Schedule;
+import com.example.yogaadmin.models.YogaCourse;
+import com.example.yogaadmin.utils.DateUtils;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+// The push and pull logic of a sync run, between a SyncStore and a SyncTransport. Plain Java:
+// FirebaseSync wires it to the app's repository and the network, and tests drive it on a JVM
+// with an in-memory store and transport. Every callback, from the store and the transport alike,
+// must arrive on one thread, which is the main thread in the app.
+public class SyncEngine {
+    private static final String COURSES_REF = "courses";
+    private static final String SCHEDULES_REF = "schedules";
+    // When the row was last edited, by the editing device's clock; only settles conflicts
+    private static final String LAST_MODIFIED_KEY = "lastModified";
+    // When the write reached the server; pulls are ranged on it
+    private static final String SERVER_MODIFIED_KEY = SyncTransport.SERVER_MODIFIED_KEY;
+    // Installation that made the write; breaks lastModified ties the same way on every device
+    private static final String MODIFIED_BY_KEY = "modifiedBy";
+    // Outbox entries per multi-path write; each batch is acknowledged before the next is read
+    public static final int DEFAULT_BATCH_SIZE = 500;
+
+    // Local column names, as recorded in outbox entries, to cloud keys
+    private static final Map<String, String> COURSE_KEYS = new HashMap<>();
+    private static final Map<String, String> SCHEDULE_KEYS = new HashMap<>();
+
+    static {
+        COURSE_KEYS.put("day_of_week", "dayOfWeek");
+        COURSE_KEYS.put("time", "time");
+        COURSE_KEYS.put("price", "price");
+        COURSE_KEYS.put("capacity", "capacity");
+        COURSE_KEYS.put("duration", "duration");
+        COURSE_KEYS.put("type", "type");
+        COURSE_KEYS.put("description", "description");
+        COURSE_KEYS.put("is_active", "isActive");
+        COURSE_KEYS.put("difficulty", "difficulty");
+        COURSE_KEYS.put("equipment", "equipment");
+
+        SCHEDULE_KEYS.put("date", "date");
+        SCHEDULE_KEYS.put("teacher", "teacher");
+        SCHEDULE_KEYS.put("comments", "comments");
+        SCHEDULE_KEYS.put("yoga_course_id", "yogaCourseId");
+        SCHEDULE_KEYS.put("current_enrollment", "currentEnrollment");
+        SCHEDULE_KEYS.put("is_cancelled", "isCancelled");
+    }
+
+    private final SyncStore repository;
+    private final SyncTransport transport;
+    private final SyncCallback callback;
+    private final String deviceId;
+    private int batchSize = DEFAULT_BATCH_SIZE;
+    private SyncReport report = new SyncReport();
+    private boolean pullAfterPush;
+    // Nodes still being fetched by the current pull
+    private int pullsPending;
+    // Set once the run has reported or been cancelled; nothing further is sent or written
+    private boolean finished;
+
+    public interface SyncCallback {
+        void onSuccess(SyncReport report);
+        void onError(String error);
+    }
+
+    // deviceId is stamped on pushed records and breaks equal-timestamp conflicts
+    public SyncEngine(SyncStore repository, SyncTransport transport, String deviceId, SyncCallback callback) {
+        this.repository = repository;
+        this.transport = transport;
+        this.deviceId = deviceId;
+        this.callback = callback;
+    }
+
+    // Outbox entries per multi-path write. Larger batches mean fewer round trips but more to
+    // resend if one fails.
+    public void setBatchSize(int batchSize) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("batchSize must be positive: " + batchSize);
+        }
+        this.batchSize = batchSize;
+    }
+
+    // Stops the run before its next transport or repository call, without reporting. A call
+    // already in flight still completes, but nothing follows it: a batch the cloud accepts
+    // afterwards stays in the outbox and is sent again by the next run.
+    public void cancel() {
+        finished = true;
+    }
+
+    // Pushes local changes, then pulls what changed in the cloud, reporting once for both
+    public void sync() {
+        report = new SyncReport();
+        finished = false;
+        pullAfterPush = true;
+        drainOutbox();
+    }
+
+    public void syncToCloud() {
+        report = new SyncReport();
+        finished = false;
+        pullAfterPush = false;
+        drainOutbox();
+    }
+
+    // Pushes pending changes in the order they were made, one multi-path write per batch of
+    // outbox entries. Several entries for one row collapse into a single write: only
+    // the changed fields when the row was just updated, its whole current state after an insert,
+    // or a removal when the row no longer exists. A batch is trimmed from the outbox, and its
+    // rows marked synced, in one local transaction once the cloud has acknowledged it; a failed
+    // or interrupted sync resumes from the same entry next time.
+    private void drainOutbox() {
+        repository.getOutboxEntries(0, batchSize, step(entries -> {
+            if (entries.isEmpty()) {
+                finishPush();
+                return;
+            }
+            Set<Integer> courseIds = new HashSet<>();
+            Set<Integer> scheduleIds = new HashSet<>();
+            for (OutboxEntry entry : entries) {
+                if (ChangeNotifier.COURSES.equals(entry.getEntity())) {
+                    courseIds.add(entry.getEntityId());
+                } else if (ChangeNotifier.SCHEDULES.equals(entry.getEntity())) {
+                    scheduleIds.add(entry.getEntityId());
+                }
+            }
+            repository.getYogaCoursesByIds(courseIds, step(courses ->
+                    repository.getSchedulesByIds(scheduleIds, step(schedules ->
+                            pushBatch(entries, courses, schedules)))));
+        }));
+    }
+
+    private void pushBatch(List<OutboxEntry> entries, List<YogaCourse> courses, List<Schedule> schedules) {
+        Map<String, Map<String, Object>> currentValues = new HashMap<>();
+        for (YogaCourse course : courses) {
+            currentValues.put(COURSES_REF + "/" + course.getId(), courseValues(course));
+        }
+        for (Schedule schedule : schedules) {
+            currentValues.put(SCHEDULES_REF + "/" + schedule.getId(), scheduleValues(schedule));
+        }
+
+        // Changed cloud keys per row path in first-change order, so a course is written before
+        // schedules added to it; null means the whole row
+        Map<String, Set<String>> changedKeys = new LinkedHashMap<>();
+        for (OutboxEntry entry : entries) {
+            String path;
+            Map<String, String> keysByColumn;
+            if (ChangeNotifier.COURSES.equals(entry.getEntity())) {
+                path = COURSES_REF + "/" + entry.getEntityId();
+                keysByColumn = COURSE_KEYS;
+            } else if (ChangeNotifier.SCHEDULES.equals(entry.getEntity())) {
+                path = SCHEDULES_REF + "/" + entry.getEntityId();
+                keysByColumn = SCHEDULE_KEYS;
+            } else {
+                continue;
+            }
+            boolean seen = changedKeys.containsKey(path);
+            Set<String> keys = changedKeys.get(path);
+            if (seen && keys == null) {
+                continue;
+            }
+            if (!OutboxEntry.OP_UPDATE.equals(entry.getOperation())) {
+                changedKeys.put(path, null);
+                continue;
+            }
+            if (keys == null) {
+                keys = new HashSet<>();
+                changedKeys.put(path, keys);
+            }
+            for (String column : entry.getChangedFields()) {
+                String key = keysByColumn.get(column);
+                if (key == null) {
+                    // A column this version doesn't map; fall back to the whole row
+                    changedKeys.put(path, null);
+                    break;
+                }
+                keys.add(key);
+            }
+        }
+
+        Map<String, Object> updates = new LinkedHashMap<>();
+        for (Map.Entry<String, Set<String>> row : changedKeys.entrySet()) {
+            String path = row.getKey();
+            Map<String, Object> values = currentValues.get(path);
+            if (values == null || row.getValue() == null) {
+                // null removes the row in the cloud
+                updates.put(path, values);
+            } else {
+                for (String key : row.getValue()) {
+                    updates.put(path + "/" + key, values.get(key));
+                }
+                updates.put(path + "/" + LAST_MODIFIED_KEY, values.get(LAST_MODIFIED_KEY));
+                updates.put(path + "/" + MODIFIED_BY_KEY, values.get(MODIFIED_BY_KEY));
+                updates.put(path + "/" + SERVER_MODIFIED_KEY, values.get(SERVER_MODIFIED_KEY));
+            }
+        }
+
+        long throughSeq = entries.get(entries.size() - 1).getSeq();
+        boolean fullBatch = entries.size() == batchSize;
+        int records = changedKeys.size();
+        transport.putBatch(updates, new SyncTransport.Callback<Void>() {
+            @Override
+            public void onSuccess(Void result) {
+                if (finished) {
+                    return;
+                }
+                repository.acknowledgeOutbox(throughSeq, step(removed -> {
+                    report.addBatch(records, removed);
+                    if (fullBatch) {
+                        drainOutbox();
+                    } else {
+                        finishPush();
+                    }
+                }));
+            }
+
+            @Override
+            public void onFailure(String error) {
+                handleError("Error syncing changes: " + error);
+            }
+        });
+    }
+
+    private void finishPush() {
+        if (pullAfterPush) {
+            pull();
+        } else {
+            handleSuccess();
+        }
+    }
+
+    private Map<String, Object> courseValues(YogaCourse course) {
+        Map<String, Object> courseValues = new HashMap<>();
+        courseValues.put("dayOfWeek", course.getDayOfWeek());
+        courseValues.put("time", course.getTime());
+        courseValues.put("price", course.getPrice());
+        courseValues.put("capacity", course.getCapacity());
+        courseValues.put("duration", course.getDuration());
+        courseValues.put("type", course.getType());
+        courseValues.put("description", course.getDescription());
+        courseValues.put("isActive", course.isActive());
+        courseValues.put("difficulty", course.getDifficulty());
+        courseValues.put("equipment", course.getEquipment());
+        courseValues.put(LAST_MODIFIED_KEY, course.getLastModified());
+        courseValues.put(MODIFIED_BY_KEY, deviceId);
+        courseValues.put(SERVER_MODIFIED_KEY, transport.serverTimestamp());
+        return courseValues;
+    }
+
+    private Map<String, Object> scheduleValues(Schedule schedule) {
+        Map<String, Object> scheduleValues = new HashMap<>();
+        scheduleValues.put("date", schedule.getDate());
+        scheduleValues.put("teacher", schedule.getTeacher());
+        scheduleValues.put("comments", schedule.getComments());
+        scheduleValues.put("yogaCourseId", schedule.getYogaCourseId());
+        scheduleValues.put("currentEnrollment", schedule.getCurrentEnrollment());
+        scheduleValues.put("isCancelled", schedule.isCancelled());
+        scheduleValues.put(LAST_MODIFIED_KEY, schedule.getLastModified());
+        scheduleValues.put(MODIFIED_BY_KEY, deviceId);
+        scheduleValues.put(SERVER_MODIFIED_KEY, transport.serverTimestamp());
+        return scheduleValues;
+    }
+
+    public void syncFromCloud() {
+        report = new SyncReport();
+        finished = false;
+        pull();
+    }
+
+    // Delta pulls: each node is read from its stored serverModified watermark onwards through a
+    // ranged read. The server stamps that field as each write lands, so an edit another device
+    // made offline and pushed late is still after the watermark, whatever its lastModified. The
+    // range is inclusive so records sharing the watermark's millisecond are never missed;
+    // re-applying those few is harmless. Both nodes are fetched at once, so the
+    // pull costs one round trip rather than two, and the results are buffered and applied in a
+    // single local transaction, courses before schedules.
+    private void pull() {
+        PulledChanges changes = new PulledChanges();
+        pullsPending = 2;
+        repository.getSyncWatermark(ChangeNotifier.COURSES, step(watermark ->
+                transport.getChangedSince(COURSES_REF, watermark, new SyncTransport.Callback<Map<String, Map<String, Object>>>() {
+                    @Override
+                    public void onSuccess(Map<String, Map<String, Object>> records) {
+                        if (finished) {
+                            return;
+                        }
+                        long pulledThrough = watermark;
+                        for (Map.Entry<String, Map<String, Object>> record : records.entrySet()) {
+                            YogaCourse course = parseCourse(record.getKey(), record.getValue());
+                            if (course != null) {
+                                changes.addCourse(course, winsTie(record.getValue()));
+                                pulledThrough = Math.max(pulledThrough, serverModified(record.getValue()));
+                            }
+                        }
+                        changes.setCourseWatermark(pulledThrough);
+                        onNodePulled(changes);
+                    }
+
+                    @Override
+                    public void onFailure(String error) {
+                        handleError("Error syncing courses: " + error);
+                    }
+                })));
+        repository.getSyncWatermark(ChangeNotifier.SCHEDULES, step(watermark ->
+                transport.getChangedSince(SCHEDULES_REF, watermark, new SyncTransport.Callback<Map<String, Map<String, Object>>>() {
+                    @Override
+                    public void onSuccess(Map<String, Map<String, Object>> records) {
+                        if (finished) {
+                            return;
+                        }
+                        long pulledThrough = watermark;
+                        for (Map.Entry<String, Map<String, Object>> record : records.entrySet()) {
+                            Schedule schedule = parseSchedule(record.getKey(), record.getValue());
+                            if (schedule != null) {
+                                changes.addSchedule(schedule, winsTie(record.getValue()));
+                                pulledThrough = Math.max(pulledThrough, serverModified(record.getValue()));
+                            }
+                        }
+                        changes.setScheduleWatermark(pulledThrough);
+                        onNodePulled(changes);
+                    }
+
+                    @Override
+                    public void onFailure(String error) {
+                        handleError("Error syncing schedules: " + error);
+                    }
+                })));
+    }
+
+    // Callbacks arrive on the main thread, so the count needs no locking
+    private void onNodePulled(PulledChanges changes) {
+        if (finished || --pullsPending > 0) {
+            return;
+        }
+        report.addReceived(changes.getCourseCount() + changes.getScheduleCount());
+        if (changes.isEmpty()) {
+            handleSuccess();
+            return;
+        }
+        repository.mergePulled(changes, step(merged -> {
+            report.addMerge(merged);
+            handleSuccess();
+        }));
+    }
+
+    // A conflicting local edit was made on this device, so equal timestamps are settled by
+    // comparing installation ids; records from before ids were stamped lose
+    private boolean winsTie(Map<String, Object> record) {
+        String writer = text(record, MODIFIED_BY_KEY);
+        return writer != null && writer.compareTo(deviceId) > 0;
+    }
+
+    // Records are read field by field into the hydration constructors: the model setters would
+    // stamp lastModified with the current time, losing the cloud value conflicts are settled
+    // by. Records with a malformed key or missing required fields are skipped.
+    private static YogaCourse parseCourse(String key, Map<String, Object> record) {
+        String dayOfWeek = text(record, "dayOfWeek");
+        String time = text(record, "time");
+        String type = text(record, "type");
+        int id = parseId(key);
+        if (id <= 0 || dayOfWeek == null || time == null || type == null) {
+            return null;
+        }
+        return new YogaCourse(id, dayOfWeek, time, (float) number(record, "price"),
+                (int) number(record, "capacity"), (int) number(record, "duration"), type,
+                text(record, "description"), flag(record, "isActive", true),
+                text(record, "difficulty"), text(record, "equipment"),
+                (long) number(record, LAST_MODIFIED_KEY), true);
+    }
+
+    private static Schedule parseSchedule(String key, Map<String, Object> record) {
+        String date = text(record, "date");
+        String teacher = text(record, "teacher");
+        int id = parseId(key);
+        if (id <= 0 || date == null || teacher == null) {
+            return null;
+        }
+        return new Schedule(id, DateUtils.parseEpochDay(date), date, teacher, text(record, "comments"),
+                (int) number(record, "yogaCourseId"), (int) number(record, "currentEnrollment"),
+                flag(record, "isCancelled", false), (long) number(record, LAST_MODIFIED_KEY), true);
+    }
+
+    private static long serverModified(Map<String, Object> record) {
+        return (long) number(record, SERVER_MODIFIED_KEY);
+    }
+
+    private static int parseId(String key) {
+        try {
+            return Integer.parseInt(key);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static String text(Map<String, Object> record, String key) {
+        Object value = record.get(key);
+        return value == null ? null : value.toString();
+    }
+
+    // The cloud hands numbers back as Long or Double depending on their value
+    private static double number(Map<String, Object> record, String key) {
+        Object value = record.get(key);
+        return value instanceof Number ? ((Number) value).doubleValue() : 0;
+    }
+
+    private static boolean flag(Map<String, Object> record, String key, boolean fallback) {
+        Object value = record.get(key);
+        return value instanceof Boolean ? (Boolean) value : fallback;
+    }
+
+    // Repository callback that fails the run instead of only logging, so the caller always
+    // hears back from it, and goes no further once the run has finished or been cancelled
+    private <T> YogaRepository.Callback<T> step(Consumer<T> next) {
+        return new YogaRepository.Callback<T>() {
+            @Override
+            public void onResult(T result) {
+                if (!finished) {
+                    next.accept(result);
+                }
+            }
+
+            @Override
+            public void onError(Throwable error) {
+                handleError("Local database error: " + error.getMessage());
+            }
+        };
+    }
+
+    // Each run reports once; with both nodes in flight, the second failure is dropped
+    private void handleSuccess() {
+        if (finished) {
+            return;
+        }
+        finished = true;
+        if (callback != null) {
+            callback.onSuccess(report);
+        }
+    }
+
+    private void handleError(String error) {
+        if (finished) {
+            return;
+        }
+        finished = true;
+        if (callback != null) {
+            callback.onError(error);
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.example.yogaadmin.sync;
+
+import com.example.yogaadmin.db.MergeReport;
+
+import java.util.Locale;
+
+// What one sync run sent and received, handed to SyncCallback.onSuccess
+public class SyncReport {
+    private int recordsSent;
+    private int batchesSent;
+    private int entriesAcknowledged;
+    private int recordsReceived;
+    private final MergeReport merge = new MergeReport();
+
+    void addBatch(int records, int entries) {
+        recordsSent += records;
+        entriesAcknowledged += entries;
+        batchesSent++;
+    }
+
+    void addReceived(int records) {
+        recordsReceived += records;
+    }
+
+    void addMerge(MergeReport report) {
+        merge.add(report);
+    }
+
+    // Rows written or removed in the cloud; several outbox entries for one row count once
+    public int getRecordsSent() { return recordsSent; }
+
+    // Multi-path writes, each a single round trip
+    public int getBatchesSent() { return batchesSent; }
+
+    public int getEntriesAcknowledged() { return entriesAcknowledged; }
+
+    // Records changed in the cloud since the last pull
+    public int getRecordsReceived() { return recordsReceived; }
+
+    // How the received records were applied locally
+    public MergeReport getMerge() { return merge; }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.UK, "sent %d records in %d batches (%d changes), received %d records (%s)",
+                recordsSent, batchesSent, entriesAcknowledged, recordsReceived, merge);
+    }
+}
@@ -0,0 +1,302 @@
+package com.example.yogaadmin.sync;
+
+import android.content.Context;
+import android.net.ConnectivityManager;
+import android.net.Network;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.example.yogaadmin.R;
+import com.example.yogaadmin.db.ChangeNotifier;
+import com.example.yogaadmin.db.YogaRepository;
+import com.example.yogaadmin.models.OutboxEntry;
+import com.example.yogaadmin.utils.NetworkUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+// Runs FirebaseSync on its own. A burst of local edits is coalesced into one run, a run starts
+// when the network comes back, and a failed run is retried with exponential backoff and jitter.
+// At most one run is in flight; anything requested meanwhile is folded into a single follow-up
+// run. All state is confined to the main thread.
+public class SyncScheduler {
+    private static final String TAG = "SyncScheduler";
+    // Quiet period after a local edit before syncing
+    static final long COALESCE_DELAY_MS = 5_000;
+    // Longest a steady stream of edits can hold a run back
+    static final long MAX_COALESCE_DELAY_MS = 30_000;
+    static final long INITIAL_BACKOFF_MS = 2_000;
+    static final long MAX_BACKOFF_MS = 10 * 60_000;
+    // A run that never reports back, e.g. a write the client holds until it reconnects, is
+    // abandoned and counted as a failure
+    static final long RUN_TIMEOUT_MS = 2 * 60_000;
+
+    private final Context context;
+    private final YogaRepository repository;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final Random random = new Random();
+    private final List<Listener> listeners = new ArrayList<>();
+    private final Runnable runTask = this::runIfDue;
+    private final Runnable timeoutTask = () -> failRun("Sync timed out");
+    private SyncTransport transport;
+    private FirebaseSync currentSync;
+
+    private long scheduledAt;           // Uptime the pending run is due at, 0 when none is
+    private long burstStartedAt;        // First edit of the burst the pending run is coalescing
+    private boolean running;
+    private boolean rerunRequested;
+    private boolean fullSyncRequested;  // Pull as well even if nothing is waiting to be pushed
+    private boolean userRequested;      // Someone is waiting on the next run
+    private boolean runUserRequested;
+    private boolean waitingForNetwork;
+    private int failures;
+    private int generation;             // Lets a timed-out run's late callbacks be ignored
+
+    public interface Listener {
+        void onSyncStarted(boolean userRequested);
+        void onSyncFinished(SyncReport report, boolean userRequested);
+        // retryInMillis is -1 when the run waits for the network instead
+        void onSyncFailed(String error, boolean userRequested, long retryInMillis);
+    }
+
+    private final ChangeNotifier.Observer localChangeObserver = (table, ids) -> onLocalChange();
+
+    private final ConnectivityManager.NetworkCallback networkCallback = new ConnectivityManager.NetworkCallback() {
+        @Override
+        public void onAvailable(Network network) {
+            // Delivered on a connectivity thread
+            handler.post(SyncScheduler.this::onNetworkAvailable);
+        }
+    };
+
+    public SyncScheduler(Context context, YogaRepository repository) {
+        this.context = context.getApplicationContext();
+        this.repository = repository;
+    }
+
+    // Watches for local edits and connectivity, and syncs once straight away
+    public void start() {
+        repository.getChangeNotifier().register(ChangeNotifier.COURSES, localChangeObserver);
+        repository.getChangeNotifier().register(ChangeNotifier.SCHEDULES, localChangeObserver);
+        ConnectivityManager connectivityManager =
+                (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
+        if (connectivityManager != null) {
+            connectivityManager.registerDefaultNetworkCallback(networkCallback);
+        }
+        fullSyncRequested = true;
+        requestRunIn(0);
+    }
+
+    // Stands in for the cloud from the next run on, e.g. an InMemoryTransport when measuring sync
+    // without a backend; null goes back to Firebase
+    public void setTransport(SyncTransport transport) {
+        this.transport = transport;
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    // A sync someone asked for: runs now, or straight after the run already in flight
+    public void syncNow() {
+        userRequested = true;
+        fullSyncRequested = true;
+        if (running) {
+            rerunRequested = true;
+        } else {
+            requestRunIn(0);
+        }
+    }
+
+    private void onLocalChange() {
+        if (running) {
+            rerunRequested = true;
+            return;
+        }
+        if (failures > 0 || waitingForNetwork) {
+            // The pending retry or the network callback will carry this edit
+            return;
+        }
+        if (scheduledAt != 0 && burstStartedAt == 0) {
+            // A run that wasn't coalescing edits is already due sooner
+            return;
+        }
+        long now = SystemClock.uptimeMillis();
+        if (burstStartedAt == 0) {
+            burstStartedAt = now;
+        }
+        scheduleAt(Math.min(now + COALESCE_DELAY_MS, burstStartedAt + MAX_COALESCE_DELAY_MS));
+    }
+
+    private void onNetworkAvailable() {
+        if (!waitingForNetwork && failures == 0) {
+            return;
+        }
+        // Don't sit out the rest of a backoff once the connection is back
+        waitingForNetwork = false;
+        fullSyncRequested = true;
+        if (running) {
+            rerunRequested = true;
+        } else {
+            handler.removeCallbacks(runTask);
+            scheduledAt = 0;
+            requestRunIn(0);
+        }
+    }
+
+    private void requestRunIn(long delayMs) {
+        long due = SystemClock.uptimeMillis() + delayMs;
+        if (scheduledAt == 0 || due < scheduledAt) {
+            scheduleAt(due);
+        }
+        burstStartedAt = 0;
+    }
+
+    private void scheduleAt(long due) {
+        handler.removeCallbacks(runTask);
+        scheduledAt = due;
+        handler.postAtTime(runTask, due);
+    }
+
+    private void runIfDue() {
+        scheduledAt = 0;
+        burstStartedAt = 0;
+        if (running) {
+            rerunRequested = true;
+            return;
+        }
+        if (!NetworkUtils.isNetworkAvailable(context)) {
+            waitingForNetwork = true;
+            fullSyncRequested = true;
+            if (userRequested) {
+                userRequested = false;
+                notifyFailed(context.getString(R.string.no_network), true, -1);
+            }
+            return;
+        }
+        if (fullSyncRequested || userRequested) {
+            startRun();
+            return;
+        }
+        // Only local edits asked for this run, and rows applied by the last pull notify as
+        // well, so skip it when nothing is waiting in the outbox
+        running = true;
+        repository.getOutboxEntries(0, 1, new YogaRepository.Callback<List<OutboxEntry>>() {
+            @Override
+            public void onResult(List<OutboxEntry> entries) {
+                running = false;
+                if (!entries.isEmpty()) {
+                    startRun();
+                } else {
+                    runFollowUp();
+                }
+            }
+
+            @Override
+            public void onError(Throwable error) {
+                Log.e(TAG, "Could not read the sync outbox", error);
+                running = false;
+                runFollowUp();
+            }
+        });
+    }
+
+    private void startRun() {
+        running = true;
+        rerunRequested = false;
+        fullSyncRequested = false;
+        waitingForNetwork = false;
+        runUserRequested = userRequested;
+        userRequested = false;
+        int run = ++generation;
+        for (Listener listener : new ArrayList<>(listeners)) {
+            listener.onSyncStarted(runUserRequested);
+        }
+        handler.postDelayed(timeoutTask, RUN_TIMEOUT_MS);
+        if (transport == null) {
+            transport = new FirebaseTransport();
+        }
+        currentSync = new FirebaseSync(context, transport, new SyncEngine.SyncCallback() {
+            @Override
+            public void onSuccess(SyncReport report) {
+                if (run == generation) {
+                    finishRun(report);
+                }
+            }
+
+            @Override
+            public void onError(String error) {
+                if (run == generation) {
+                    failRun(error);
+                }
+            }
+        });
+        currentSync.sync();
+    }
+
+    private void finishRun(SyncReport report) {
+        handler.removeCallbacks(timeoutTask);
+        currentSync = null;
+        running = false;
+        failures = 0;
+        Log.d(TAG, "Sync finished: " + report);
+        for (Listener listener : new ArrayList<>(listeners)) {
+            listener.onSyncFinished(report, runUserRequested);
+        }
+        runFollowUp();
+    }
+
+    private void failRun(String error) {
+        handler.removeCallbacks(timeoutTask);
+        // A timed-out run would otherwise keep draining the outbox alongside the retry
+        currentSync.cancel();
+        currentSync = null;
+        // Late callbacks from the abandoned run no longer match
+        generation++;
+        running = false;
+        rerunRequested = false;
+        fullSyncRequested = true;
+        failures++;
+        long delay = backoffDelay(failures, random);
+        Log.w(TAG, "Sync failed (attempt " + failures + "), retrying in " + delay + " ms: " + error);
+        handler.removeCallbacks(runTask);
+        scheduleAt(SystemClock.uptimeMillis() + delay);
+        burstStartedAt = 0;
+        notifyFailed(error, runUserRequested, delay);
+    }
+
+    // Folds whatever was requested during a run into one more run
+    private void runFollowUp() {
+        if (!rerunRequested) {
+            return;
+        }
+        rerunRequested = false;
+        if (userRequested || fullSyncRequested) {
+            requestRunIn(0);
+        } else {
+            onLocalChange();
+        }
+    }
+
+    // Exponential backoff with "equal jitter": half the window is kept so retries never bunch
+    // up at zero, the other half is random so devices that failed together spread out
+    static long backoffDelay(int failures, Random random) {
+        int doublings = Math.min(Math.max(failures - 1, 0), 20);
+        long window = Math.min(INITIAL_BACKOFF_MS << doublings, MAX_BACKOFF_MS);
+        long half = window / 2;
+        return half + (long) (random.nextDouble() * (window - half));
+    }
+
+    private void notifyFailed(String error, boolean userRequested, long retryInMillis) {
+        for (Listener listener : new ArrayList<>(listeners)) {
+            listener.onSyncFailed(error, userRequested, retryInMillis);
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.example.yogaadmin.sync;
+
+import java.util.Map;
+
+// The cloud store a sync run talks to. Paths are slash-separated ("schedules/42" for a record,
+// "schedules/42/teacher" for one of its fields) and records are flat key to value maps.
+// Callbacks arrive on whatever thread the implementation documents; SyncEngine expects the
+// thread its store calls back on, the main thread in the app.
+public interface SyncTransport {
+    // Every record carries this key, set by the server when a write reaches it; ranged reads
+    // are ordered by it. Unlike a client's lastModified it never goes backwards, so an edit made
+    // offline and pushed late still sorts after everything already pulled.
+    String SERVER_MODIFIED_KEY = "serverModified";
+
+    interface Callback<T> {
+        void onSuccess(T result);
+        void onFailure(String error);
+    }
+
+    // Applies every path at once or none of them; a null value removes the path
+    void putBatch(Map<String, Object> updates, Callback<Void> callback);
+
+    // Value to write under SERVER_MODIFIED_KEY; the server replaces it with its own clock
+    Object serverTimestamp();
+
+    // Records directly under node whose serverModified is at or after since, by record key, in
+    // serverModified order. A since of 0 reads the whole node in any order, records written
+    // before serverModified was stamped included.
+    void getChangedSince(String node, long since, Callback<Map<String, Map<String, Object>>> callback);
+
+    // Removes one record; the same as a putBatch with a single null value at node/key
+    void delete(String node, String key, Callback<Void> callback);
+}
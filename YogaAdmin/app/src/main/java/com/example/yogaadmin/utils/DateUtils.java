@@ -0,0 +1,111 @@
+package com.example.yogaadmin.utils;
+
+import java.util.Calendar;
+import java.util.Locale;
+
+// Calendar arithmetic on epoch days (days since 1970-01-01), the integer form schedule
+// dates are stored and indexed in. Pure arithmetic, so hot paths don't allocate Calendars.
+public final class DateUtils {
+    public static final long NO_DATE = Long.MIN_VALUE;
+
+    // Indexed like SQLite's strftime('%w'): 0 = Sunday
+    private static final String[] DAY_NAMES = {
+            "Sunday", "Monday", "Tuesday", "Wednesday", "Thursday", "Friday", "Saturday"
+    };
+
+    private DateUtils() {
+    }
+
+    public static long toEpochDay(int year, int month, int day) {
+        // Days-from-civil for the proleptic Gregorian calendar; month is 1-12.
+        int y = month <= 2 ? year - 1 : year;
+        long era = (y >= 0 ? y : y - 399) / 400;
+        long yearOfEra = y - era * 400;
+        long dayOfYear = (153L * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097 + dayOfEra - 719468;
+    }
+
+    // Parses dd/MM/yyyy, returning NO_DATE when the text is not a real calendar date.
+    public static long parseEpochDay(String date) {
+        if (date == null) {
+            return NO_DATE;
+        }
+        int firstSlash = date.indexOf('/');
+        int secondSlash = date.indexOf('/', firstSlash + 1);
+        if (firstSlash <= 0 || secondSlash <= firstSlash + 1 || secondSlash == date.length() - 1) {
+            return NO_DATE;
+        }
+        int day = parseDigits(date, 0, firstSlash);
+        int month = parseDigits(date, firstSlash + 1, secondSlash);
+        int year = parseDigits(date, secondSlash + 1, date.length());
+        if (day < 1 || month < 1 || month > 12 || year < 1 || day > daysInMonth(year, month)) {
+            return NO_DATE;
+        }
+        return toEpochDay(year, month, day);
+    }
+
+    public static String formatEpochDay(long epochDay) {
+        long z = epochDay + 719468;
+        long era = (z >= 0 ? z : z - 146096) / 146097;
+        long dayOfEra = z - era * 146097;
+        long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        long mp = (5 * dayOfYear + 2) / 153;
+        int day = (int) (dayOfYear - (153 * mp + 2) / 5 + 1);
+        int month = (int) (mp < 10 ? mp + 3 : mp - 9);
+        int year = (int) (yearOfEra + era * 400 + (month <= 2 ? 1 : 0));
+        return String.format(Locale.UK, "%02d/%02d/%04d", day, month, year);
+    }
+
+    public static int dayOfWeek(long epochDay) {
+        // 1970-01-01 was a Thursday
+        return (int) Math.floorMod(epochDay + 4, 7L);
+    }
+
+    public static String dayName(int dayOfWeek) {
+        return DAY_NAMES[dayOfWeek];
+    }
+
+    public static int dayOfWeekFromName(String name) {
+        for (int i = 0; i < DAY_NAMES.length; i++) {
+            if (DAY_NAMES[i].equalsIgnoreCase(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public static long today() {
+        Calendar calendar = Calendar.getInstance();
+        return toEpochDay(calendar.get(Calendar.YEAR), calendar.get(Calendar.MONTH) + 1,
+                calendar.get(Calendar.DAY_OF_MONTH));
+    }
+
+    private static int parseDigits(String text, int start, int end) {
+        int value = 0;
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            if (c < '0' || c > '9' || value > 99999) {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    private static int daysInMonth(int year, int month) {
+        switch (month) {
+            case 2:
+                boolean leap = (year % 4 == 0 && year % 100 != 0) || year % 400 == 0;
+                return leap ? 29 : 28;
+            case 4:
+            case 6:
+            case 9:
+            case 11:
+                return 30;
+            default:
+                return 31;
+        }
+    }
+}
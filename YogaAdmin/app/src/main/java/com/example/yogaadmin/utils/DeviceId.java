@@ -0,0 +1,28 @@
+package com.example.yogaadmin.utils;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import java.util.UUID;
+
+// Random id for this installation, stamped on records it pushes so every device breaks
+// equal-timestamp sync conflicts the same way. Survives restarts; a reinstall gets a new one.
+public class DeviceId {
+    private static final String PREFS_NAME = "sync";
+    private static final String KEY_DEVICE_ID = "device_id";
+
+    private static String deviceId;
+
+    public static synchronized String get(Context context) {
+        if (deviceId == null) {
+            SharedPreferences prefs = context.getApplicationContext()
+                    .getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+            deviceId = prefs.getString(KEY_DEVICE_ID, null);
+            if (deviceId == null) {
+                deviceId = UUID.randomUUID().toString();
+                prefs.edit().putString(KEY_DEVICE_ID, deviceId).apply();
+            }
+        }
+        return deviceId;
+    }
+}
@@ -0,0 +1,238 @@
+package com.example.yogaadmin.sync;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Runs the in-process transport on the host JVM: write semantics, server timestamps, ranged
+ * reads, and injected latency and failures. SyncEngineTest drives a whole sync over it.
+ */
+public class InMemoryTransportTest {
+    private final InMemoryTransport transport = new InMemoryTransport(Runnable::run);
+
+    @Test
+    public void putBatchWritesRecordsFieldsAndRemovals() throws Exception {
+        Map<String, Object> updates = new LinkedHashMap<>();
+        updates.put("schedules/1", schedule("Sam", 100));
+        updates.put("schedules/2", schedule("Alex", 200));
+        await(put(updates));
+
+        Map<String, Object> edits = new LinkedHashMap<>();
+        edits.put("schedules/1/teacher", "Jo");
+        edits.put("schedules/1/lastModified", 300L);
+        edits.put("schedules/2", null);
+        await(put(edits));
+
+        assertEquals("Jo", transport.getRecord("schedules", "1").get("teacher"));
+        assertEquals(300L, transport.getRecord("schedules", "1").get("lastModified"));
+        assertNull(transport.getRecord("schedules", "2"));
+        assertEquals(1, transport.getRecordCount("schedules"));
+    }
+
+    @Test
+    public void deleteRemovesOnlyThatRecord() throws Exception {
+        Map<String, Object> updates = new LinkedHashMap<>();
+        updates.put("schedules/1", schedule("Sam", 100));
+        updates.put("schedules/2", schedule("Alex", 200));
+        await(put(updates));
+
+        await(delete("schedules", "1"));
+        // Deleting a record that is already gone still succeeds
+        await(delete("schedules", "1"));
+
+        assertNull(transport.getRecord("schedules", "1"));
+        assertEquals("Alex", transport.getRecord("schedules", "2").get("teacher"));
+        assertEquals(1, transport.getRecordCount("schedules"));
+    }
+
+    @Test
+    public void badPathLeavesBatchUnapplied() throws Exception {
+        Map<String, Object> updates = new LinkedHashMap<>();
+        updates.put("schedules/1", schedule("Sam", 100));
+        updates.put("schedules/1/a/b", "too deep");
+
+        assertNotNull(awaitFailure(put(updates)));
+        assertEquals(0, transport.getRecordCount("schedules"));
+    }
+
+    @Test
+    public void getChangedSinceIsInclusiveAndOrdered() throws Exception {
+        Map<String, Object> updates = new LinkedHashMap<>();
+        updates.put("schedules/3", schedule("Sam", 300));
+        updates.put("schedules/1", schedule("Alex", 100));
+        updates.put("schedules/2", schedule("Jo", 200));
+        updates.put("schedules/4", schedule("Kim", 200));
+        await(put(updates));
+
+        Map<String, Map<String, Object>> records = await(changedSince("schedules", 200));
+
+        assertEquals(3, records.size());
+        assertEquals(Arrays.asList("2", "4", "3"), new ArrayList<>(records.keySet()));
+        assertEquals(0, await(changedSince("courses", 0)).size());
+    }
+
+    @Test
+    public void serverTimestampIsStampedOnWrite() throws Exception {
+        Map<String, Object> record = schedule("Sam", 0);
+        record.put("serverModified", transport.serverTimestamp());
+        Map<String, Object> updates = new LinkedHashMap<>();
+        updates.put("schedules/1", record);
+        updates.put("schedules/2/serverModified", transport.serverTimestamp());
+        long before = System.currentTimeMillis();
+        await(put(updates));
+
+        Object stamped = transport.getRecord("schedules", "1").get("serverModified");
+        assertTrue(stamped instanceof Long && (Long) stamped >= before);
+        assertEquals(stamped, transport.getRecord("schedules", "2").get("serverModified"));
+        assertEquals(2, await(changedSince("schedules", (Long) stamped)).size());
+    }
+
+    @Test
+    public void recordsWithoutServerTimestampOnlyInFullRead() throws Exception {
+        Map<String, Object> legacy = schedule("Sam", 0);
+        legacy.remove("serverModified");
+        Map<String, Object> updates = new LinkedHashMap<>();
+        updates.put("schedules/1", legacy);
+        updates.put("schedules/2", schedule("Jo", 100));
+        await(put(updates));
+
+        assertEquals(Arrays.asList("1", "2"), new ArrayList<>(await(changedSince("schedules", 0)).keySet()));
+        assertEquals(Arrays.asList("2"), new ArrayList<>(await(changedSince("schedules", 1)).keySet()));
+    }
+
+    @Test
+    public void injectedFailuresChangeNothing() throws Exception {
+        transport.failNext(2);
+        Map<String, Object> updates = new HashMap<>();
+        updates.put("schedules/1", schedule("Sam", 100));
+
+        assertNotNull(awaitFailure(put(updates)));
+        assertNotNull(awaitFailure(changedSince("schedules", 0)));
+        assertEquals(0, transport.getRecordCount("schedules"));
+
+        await(put(updates));
+        assertEquals(1, transport.getRecordCount("schedules"));
+        assertEquals(3, transport.getRequestCount());
+    }
+
+    @Test
+    public void failureRateIsRepeatableForSeed() {
+        int failures = failuresOutOf(200, 42);
+        assertTrue(failures > 0 && failures < 200);
+        assertEquals(failures, failuresOutOf(200, 42));
+    }
+
+    @Test
+    public void latencyDelaysCallbacksInRequestOrder() throws Exception {
+        transport.setLatency(50);
+        List<Integer> completed = new ArrayList<>();
+        CountDownLatch done = new CountDownLatch(3);
+        long start = System.nanoTime();
+        for (int i = 0; i < 3; i++) {
+            int request = i;
+            Map<String, Object> updates = new HashMap<>();
+            updates.put("schedules/" + i, schedule("Sam", i));
+            transport.putBatch(updates, new SyncTransport.Callback<Void>() {
+                @Override
+                public void onSuccess(Void result) {
+                    synchronized (completed) {
+                        completed.add(request);
+                    }
+                    done.countDown();
+                }
+
+                @Override
+                public void onFailure(String error) {
+                    fail(error);
+                }
+            });
+        }
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 50);
+        assertEquals(Arrays.asList(0, 1, 2), completed);
+    }
+
+    private int failuresOutOf(int requests, long seed) {
+        InMemoryTransport flaky = new InMemoryTransport(Runnable::run);
+        flaky.setFailureRate(0.3, seed);
+        int failures = 0;
+        for (int i = 0; i < requests; i++) {
+            Map<String, Object> updates = new HashMap<>();
+            updates.put("schedules/" + i, null);
+            Result<Void> result = new Result<>();
+            flaky.putBatch(updates, result);
+            if (result.error != null) {
+                failures++;
+            }
+        }
+        return failures;
+    }
+
+    private Result<Void> put(Map<String, Object> updates) {
+        Result<Void> result = new Result<>();
+        transport.putBatch(updates, result);
+        return result;
+    }
+
+    private Result<Void> delete(String node, String key) {
+        Result<Void> result = new Result<>();
+        transport.delete(node, key, result);
+        return result;
+    }
+
+    private Result<Map<String, Map<String, Object>>> changedSince(String node, long since) {
+        Result<Map<String, Map<String, Object>>> result = new Result<>();
+        transport.getChangedSince(node, since, result);
+        return result;
+    }
+
+    private static Map<String, Object> schedule(String teacher, long serverModified) {
+        Map<String, Object> values = new HashMap<>();
+        values.put("date", "06/10/2025");
+        values.put("teacher", teacher);
+        values.put("yogaCourseId", 1);
+        values.put("lastModified", serverModified);
+        values.put("serverModified", serverModified);
+        return values;
+    }
+
+    private static <T> T await(Result<T> result) throws InterruptedException {
+        assertTrue(result.done.await(5, TimeUnit.SECONDS));
+        assertNull(result.error);
+        return result.value;
+    }
+
+    private static String awaitFailure(Result<?> result) throws InterruptedException {
+        assertTrue(result.done.await(5, TimeUnit.SECONDS));
+        return result.error;
+    }
+
+    private static final class Result<T> implements SyncTransport.Callback<T> {
+        final CountDownLatch done = new CountDownLatch(1);
+        volatile T value;
+        volatile String error;
+
+        @Override
+        public void onSuccess(T result) {
+            value = result;
+            done.countDown();
+        }
+
+        @Override
+        public void onFailure(String error) {
+            this.error = error;
+            done.countDown();
+        }
+    }
+}
@@ -0,0 +1,298 @@
+package com.example.yogaadmin.sync;
+
+import com.example.yogaadmin.db.ChangeNotifier;
+import com.example.yogaadmin.db.MergeReport;
+import com.example.yogaadmin.db.PulledChanges;
+import com.example.yogaadmin.db.SyncStore;
+import com.example.yogaadmin.db.YogaRepository;
+import com.example.yogaadmin.models.OutboxEntry;
+import com.example.yogaadmin.models.Schedule;
+import com.example.yogaadmin.models.YogaCourse;
+import com.example.yogaadmin.utils.DateUtils;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Drives SyncEngine's real push and pull on the host JVM between in-memory stores and an
+ * InMemoryTransport, including a 100k-schedule sync between two devices as a throughput guard.
+ */
+public class SyncEngineTest {
+    private static final int BULK_SCHEDULES = 100_000;
+    // Generous, so only a real regression (not a slow CI box) trips it
+    private static final long BULK_BUDGET_MS = 30_000;
+    private static final String DATE = "06/10/2025";
+
+    // Stands in for the main thread: store and transport callbacks both arrive here
+    private final ExecutorService mainThread = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "main");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final InMemoryTransport transport = new InMemoryTransport(mainThread);
+
+    @Test
+    public void pushCollapsesEntriesPerRow() throws Exception {
+        MemoryStore device = new MemoryStore("a");
+        device.addCourse(course(1));
+        device.addSchedule(schedule(1, "Sam"));
+        device.addSchedule(schedule(2, "Jo"));
+        device.addSchedule(schedule(3, "Kim"));
+        sync(device);
+        device.updateTeacher(1, "Alex");
+        device.updateTeacher(1, "Max");
+        device.deleteSchedule(2);
+
+        SyncReport report = sync(device);
+
+        assertEquals(1, report.getBatchesSent());
+        assertEquals(2, report.getRecordsSent());
+        assertEquals(3, report.getEntriesAcknowledged());
+        assertTrue(device.outbox.isEmpty());
+        assertNull(transport.getRecord("schedules", "2"));
+        Map<String, Object> edited = transport.getRecord("schedules", "1");
+        assertEquals("Max", edited.get("teacher"));
+        assertEquals("a", edited.get("modifiedBy"));
+        assertTrue(edited.get("serverModified") instanceof Long);
+    }
+
+    @Test
+    public void pullReceivesEditPushedLateWithOlderTimestamp() throws Exception {
+        MemoryStore first = new MemoryStore("a");
+        first.addCourse(course(1));
+        first.addSchedule(schedule(1, "Sam"));
+        sync(first);
+        MemoryStore second = new MemoryStore("b");
+        sync(second);
+        assertEquals("Sam", second.schedules.get(1).getTeacher());
+
+        // Edited while offline, before the pull above, and pushed only now
+        MemoryStore offline = new MemoryStore("c");
+        Schedule stale = schedule(1, "Jo");
+        stale.setLastModified(1);
+        offline.addSchedule(stale);
+        sync(offline);
+
+        SyncReport report = sync(second);
+        assertEquals("Jo", second.schedules.get(1).getTeacher());
+        assertTrue(report.getRecordsReceived() >= 1);
+    }
+
+    @Test
+    public void cancelledRunSendsNothingFurther() throws Exception {
+        MemoryStore device = new MemoryStore("a");
+        device.addCourse(course(1));
+        device.addSchedule(schedule(1, "Sam"));
+        device.addSchedule(schedule(2, "Jo"));
+        transport.setLatency(200);
+        CountDownLatch reported = new CountDownLatch(1);
+        SyncEngine engine = new SyncEngine(device, transport, device.deviceId, new SyncEngine.SyncCallback() {
+            @Override
+            public void onSuccess(SyncReport report) {
+                reported.countDown();
+            }
+
+            @Override
+            public void onError(String error) {
+                reported.countDown();
+            }
+        });
+        engine.setBatchSize(1);
+        mainThread.execute(engine::sync);
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (transport.getRequestCount() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        mainThread.execute(engine::cancel);
+
+        assertFalse(reported.await(600, TimeUnit.MILLISECONDS));
+        assertEquals(1, transport.getRequestCount());
+        // The batch the cloud took after the cancel is left for the next run
+        assertEquals(3, onMainThread(() -> device.outbox.size()).intValue());
+    }
+
+    @Test
+    public void bulkSyncOf100kSchedulesStaysWithinBudget() throws Exception {
+        MemoryStore first = new MemoryStore("a");
+        first.addCourse(course(1));
+        for (int id = 1; id <= BULK_SCHEDULES; id++) {
+            first.addSchedule(schedule(id, "Teacher " + (id % 50)));
+        }
+        MemoryStore second = new MemoryStore("b");
+
+        long start = System.nanoTime();
+        SyncReport pushed = sync(first);
+        SyncReport pulled = sync(second);
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertEquals(BULK_SCHEDULES + 1, pushed.getEntriesAcknowledged());
+        assertEquals((BULK_SCHEDULES + 1 + SyncEngine.DEFAULT_BATCH_SIZE - 1) / SyncEngine.DEFAULT_BATCH_SIZE,
+                pushed.getBatchesSent());
+        assertTrue(first.outbox.isEmpty());
+        assertEquals(BULK_SCHEDULES, transport.getRecordCount("schedules"));
+        assertEquals(BULK_SCHEDULES + 1, pulled.getRecordsReceived());
+        assertEquals(BULK_SCHEDULES, second.schedules.size());
+        assertEquals("Teacher 7", second.schedules.get(BULK_SCHEDULES - 43).getTeacher());
+        assertTrue("100k schedule sync took " + elapsedMs + " ms", elapsedMs < BULK_BUDGET_MS);
+    }
+
+    private SyncReport sync(MemoryStore store) throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(1);
+        SyncReport[] report = new SyncReport[1];
+        String[] failure = new String[1];
+        SyncEngine engine = new SyncEngine(store, transport, store.deviceId, new SyncEngine.SyncCallback() {
+            @Override
+            public void onSuccess(SyncReport result) {
+                report[0] = result;
+                done.countDown();
+            }
+
+            @Override
+            public void onError(String error) {
+                failure[0] = error;
+                done.countDown();
+            }
+        });
+        mainThread.execute(engine::sync);
+        assertTrue(done.await(60, TimeUnit.SECONDS));
+        assertNull(failure[0]);
+        return report[0];
+    }
+
+    private <T> T onMainThread(Callable<T> work) throws Exception {
+        return mainThread.submit(work).get(5, TimeUnit.SECONDS);
+    }
+
+    private static YogaCourse course(int id) {
+        return new YogaCourse(id, "Monday", "10:00", 12f, 20, 60, "Flow Yoga", null, true,
+                null, null, System.currentTimeMillis(), false);
+    }
+
+    private static Schedule schedule(int id, String teacher) {
+        return new Schedule(id, DateUtils.parseEpochDay(DATE), DATE, teacher, null, 1, 0, false,
+                System.currentTimeMillis(), false);
+    }
+
+    // Rows and outbox in memory, calling back on the main thread as YogaRepository does. Pulled
+    // rows are applied as they come: the conflict rules are DatabaseHelper's SQL, not the engine's.
+    private final class MemoryStore implements SyncStore {
+        final String deviceId;
+        final Map<Integer, YogaCourse> courses = new HashMap<>();
+        final Map<Integer, Schedule> schedules = new HashMap<>();
+        final TreeMap<Long, OutboxEntry> outbox = new TreeMap<>();
+        final Map<String, Long> watermarks = new HashMap<>();
+        private long nextSeq = 1;
+
+        MemoryStore(String deviceId) {
+            this.deviceId = deviceId;
+        }
+
+        void addCourse(YogaCourse course) {
+            courses.put(course.getId(), course);
+            log(ChangeNotifier.COURSES, course.getId(), OutboxEntry.OP_INSERT, null);
+        }
+
+        void addSchedule(Schedule schedule) {
+            schedules.put(schedule.getId(), schedule);
+            log(ChangeNotifier.SCHEDULES, schedule.getId(), OutboxEntry.OP_INSERT, null);
+        }
+
+        void updateTeacher(int id, String teacher) {
+            schedules.get(id).setTeacher(teacher);
+            log(ChangeNotifier.SCHEDULES, id, OutboxEntry.OP_UPDATE, "teacher");
+        }
+
+        void deleteSchedule(int id) {
+            schedules.remove(id);
+            log(ChangeNotifier.SCHEDULES, id, OutboxEntry.OP_DELETE, null);
+        }
+
+        private void log(String entity, int id, String operation, String changedFields) {
+            long seq = nextSeq++;
+            outbox.put(seq, new OutboxEntry(seq, entity, id, operation, changedFields, System.currentTimeMillis()));
+        }
+
+        @Override
+        public Future<List<OutboxEntry>> getOutboxEntries(long afterSeq, int limit,
+                                                          YogaRepository.Callback<List<OutboxEntry>> callback) {
+            List<OutboxEntry> entries = new ArrayList<>();
+            for (OutboxEntry entry : outbox.tailMap(afterSeq, false).values()) {
+                if (entries.size() == limit) {
+                    break;
+                }
+                entries.add(entry);
+            }
+            return deliver(entries, callback);
+        }
+
+        @Override
+        public Future<List<YogaCourse>> getYogaCoursesByIds(Collection<Integer> ids,
+                                                            YogaRepository.Callback<List<YogaCourse>> callback) {
+            List<YogaCourse> found = new ArrayList<>();
+            for (int id : ids) {
+                if (courses.containsKey(id)) {
+                    found.add(new YogaCourse(courses.get(id)));
+                }
+            }
+            return deliver(found, callback);
+        }
+
+        @Override
+        public Future<List<Schedule>> getSchedulesByIds(Collection<Integer> ids,
+                                                        YogaRepository.Callback<List<Schedule>> callback) {
+            List<Schedule> found = new ArrayList<>();
+            for (int id : ids) {
+                if (schedules.containsKey(id)) {
+                    found.add(new Schedule(schedules.get(id)));
+                }
+            }
+            return deliver(found, callback);
+        }
+
+        @Override
+        public Future<Integer> acknowledgeOutbox(long throughSeq, YogaRepository.Callback<Integer> callback) {
+            Map<Long, OutboxEntry> acknowledged = outbox.headMap(throughSeq, true);
+            int removed = acknowledged.size();
+            acknowledged.clear();
+            return deliver(removed, callback);
+        }
+
+        @Override
+        public Future<Long> getSyncWatermark(String table, YogaRepository.Callback<Long> callback) {
+            return deliver(watermarks.getOrDefault(table, 0L), callback);
+        }
+
+        @Override
+        public Future<MergeReport> mergePulled(PulledChanges changes, YogaRepository.Callback<MergeReport> callback) {
+            for (YogaCourse course : changes.getCourses()) {
+                courses.put(course.getId(), course);
+            }
+            for (Schedule schedule : changes.getSchedules()) {
+                schedules.put(schedule.getId(), schedule);
+            }
+            watermarks.merge(ChangeNotifier.COURSES, changes.getCourseWatermark(), Math::max);
+            watermarks.merge(ChangeNotifier.SCHEDULES, changes.getScheduleWatermark(), Math::max);
+            return deliver(new MergeReport(), callback);
+        }
+
+        private <T> Future<T> deliver(T result, YogaRepository.Callback<T> callback) {
+            mainThread.execute(() -> callback.onResult(result));
+            return CompletableFuture.completedFuture(result);
+        }
+    }
+}